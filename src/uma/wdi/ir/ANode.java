@@ -12,9 +12,11 @@
 
 package uma.wdi.ir;
 
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.Map;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
 import java.util.Set;
 
 
@@ -23,10 +25,18 @@ public class ANode
     /*
      * Class for loading, storing and accessing the attributes of an xml node. Allows value lists.
      * @author Jakob Huber, Timo Sztyler
+     * Compact representation: attribute names are encoded by the shared AttributeDictionary,
+     * values are kept in small arrays (insertion order, no duplicates), values of
+     * low-cardinality attributes are shared between nodes.
      */
 
+    private static final int[] NO_KEYS = new int[0];
+    private static final ValueSet[] NO_VALUES = new ValueSet[0];
+
     String id;
-    Map<String, Set<String>> attributes = new HashMap<>();
+    // attribute indexes (AttributeDictionary) and their values, same order
+    int[] keys = NO_KEYS;
+    ValueSet[] values = NO_VALUES;
 
     public ANode(String id)
     {
@@ -35,37 +45,88 @@ public class ANode
 
     public void addAttribute(String attribute, String value)
     {
-        if(attributes.containsKey(attribute)) 
+        int key = AttributeDictionary.getIndex(attribute);
+        value = AttributeDictionary.intern(key, value);
+        int i = indexOf(key);
+        if(i >= 0)
         {
-            attributes.get(attribute).add(value);
-        } 
-        else 
+            values[i].addValue(value);
+        }
+        else
         {
-            Set<String> valueSet = new HashSet<>();
-            valueSet.add(value);
-            attributes.put(attribute, valueSet);
+            int n = keys.length;
+            keys = Arrays.copyOf(keys, n + 1);
+            values = Arrays.copyOf(values, n + 1);
+            keys[n] = key;
+            AttributeType type = AttributeDictionary.getType(key);
+            values[n] = (type == AttributeType.STRING) ? new ValueSet(value) : new TypedValueSet(value, type);
         }
     }
 
 
     public Set<String> getAttribute(String attribute)
     {
-        if(attributes.containsKey(attribute)) 
-        { 
-        	return (attributes.get(attribute)); 
+        return getAttribute(AttributeDictionary.findIndex(attribute));
+    }
+
+    // Values of an attribute given by its AttributeDictionary index (-1: no node has the attribute), 
+    // for loops over many nodes that look the name up once
+    public Set<String> getAttribute(int attribute)
+    {
+        int i = indexOf(attribute);
+        if(i >= 0)
+        {
+        	return values[i];
+        }
+
+        return Collections.emptySet();
+    }
+
+
+    // Epoch day of the first date of an attribute, TypedValues.NO_DATE if it has none.
+    // Parsed when loading for DATE attributes (AttributeDictionary.setType), otherwise on every call
+    public int getDate(String attribute)
+    {
+        return getDate(AttributeDictionary.findIndex(attribute));
+    }
+
+    public int getDate(int attribute)
+    {
+        int i = indexOf(attribute);
+        if(i < 0) return TypedValues.NO_DATE;
+        if(values[i] instanceof TypedValueSet && ((TypedValueSet) values[i]).type == AttributeType.DATE)
+        {
+            return ((TypedValueSet) values[i]).date;
         }
+        return TypedValues.firstDate(values[i]);
+    }
+
+    // First number of an attribute, NaN if it has none.
+    // Parsed when loading for NUMBER attributes (AttributeDictionary.setType), otherwise on every call
+    public double getNumber(String attribute)
+    {
+        return getNumber(AttributeDictionary.findIndex(attribute));
+    }
 
-        return new HashSet<>();
+    public double getNumber(int attribute)
+    {
+        int i = indexOf(attribute);
+        if(i < 0) return Double.NaN;
+        if(values[i] instanceof TypedValueSet && ((TypedValueSet) values[i]).type == AttributeType.NUMBER)
+        {
+            return ((TypedValueSet) values[i]).number;
+        }
+        return TypedValues.firstNumber(values[i]);
     }
 
 
     public void printAttributeNode()
     {
         System.out.println("> " + id);
-        for(String key : attributes.keySet()) 
+        for(int i = 0; i < keys.length; i++)
         {
-            System.out.println("\t" + key);
-            for(String value : attributes.get(key)) 
+            System.out.println("\t" + AttributeDictionary.getName(keys[i]));
+            for(String value : values[i])
             {
                 System.out.println("\t\t" + value);
             }
@@ -80,6 +141,150 @@ public class ANode
 
     public boolean hasAttribute(String key)
     {
-        return attributes.containsKey(key);
+        return indexOf(AttributeDictionary.findIndex(key)) >= 0;
+    }
+
+    public Set<String> getAttributeNames()
+    {
+        return new AbstractSet<String>()
+        {
+            @Override
+            public Iterator<String> iterator()
+            {
+                return new Iterator<String>()
+                {
+                    private int i = 0;
+
+                    @Override
+                    public boolean hasNext()
+                    {
+                        return i < keys.length;
+                    }
+
+                    @Override
+                    public String next()
+                    {
+                        if (i >= keys.length) throw new NoSuchElementException();
+                        return AttributeDictionary.getName(keys[i++]);
+                    }
+
+                    @Override
+                    public void remove()
+                    {
+                        throw new UnsupportedOperationException();
+                    }
+                };
+            }
+
+            @Override
+            public int size()
+            {
+                return keys.length;
+            }
+        };
+    }
+
+    private int indexOf(int key)
+    {
+        for(int i = 0; i < keys.length; i++)
+        {
+            if(keys[i] == key) return i;
+        }
+        return -1;
+    }
+
+    /*
+     * Read-only set of the values of one attribute, backed by an array
+     */
+    static class ValueSet extends AbstractSet<String>
+    {
+        String[] items;
+
+        ValueSet(String value)
+        {
+            items = new String[]{value};
+        }
+
+        // Adds the value if it is not there yet (loading only, the set is read-only for users of ANode)
+        void addValue(String value)
+        {
+            if(contains(value)) return;
+            items = Arrays.copyOf(items, items.length + 1);
+            items[items.length - 1] = value;
+        }
+
+        @Override
+        public boolean contains(Object o)
+        {
+            for(String item : items)
+            {
+                if(item.equals(o)) return true;
+            }
+            return false;
+        }
+
+        @Override
+        public Iterator<String> iterator()
+        {
+            return new Iterator<String>()
+            {
+                private int i = 0;
+
+                @Override
+                public boolean hasNext()
+                {
+                    return i < items.length;
+                }
+
+                @Override
+                public String next()
+                {
+                    if (i >= items.length) throw new NoSuchElementException();
+                    return items[i++];
+                }
+
+                @Override
+                public void remove()
+                {
+                    throw new UnsupportedOperationException();
+                }
+            };
+        }
+
+        @Override
+        public int size()
+        {
+            return items.length;
+        }
+    }
+
+    /*
+     * Values of a DATE or NUMBER attribute, with the first value that parses kept as a primitive
+     */
+    static class TypedValueSet extends ValueSet
+    {
+        final AttributeType type;
+        int date = TypedValues.NO_DATE;
+        double number = Double.NaN;
+
+        TypedValueSet(String value, AttributeType type)
+        {
+            super(value);
+            this.type = type;
+            parse(value);
+        }
+
+        @Override
+        void addValue(String value)
+        {
+            super.addValue(value);
+            parse(value);
+        }
+
+        private void parse(String value)
+        {
+            if(type == AttributeType.DATE && date == TypedValues.NO_DATE) date = TypedValues.parseDate(value);
+            else if(type == AttributeType.NUMBER && Double.isNaN(number)) number = TypedValues.parseNumber(value);
+        }
     }
 }
@@ -0,0 +1,145 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package uma.wdi.ir;
+
+import java.util.AbstractSet;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+public class AttributeColumn
+{
+	/*
+	 * One attribute of a ColumnarNodeMap: the values of entity i are 
+	 * getValue(getStart(i)) .. getValue(getEnd(i) - 1), all entities share one value array.
+	 * Columns of DATE and NUMBER attributes also keep the parsed value of every entity in a primitive array.
+	 */
+
+	private final String name;
+	private final int[] offsets;
+	private final String[] values;
+	// parsed values by entity (see AttributeType), null for other types
+	private final int[] dates;
+	private final double[] numbers;
+	// value sets of the entities, created on first use (see getValueSet)
+	private final Set<String>[] sets;
+
+	@SuppressWarnings("unchecked")
+	AttributeColumn(String name, int[] offsets, String[] values, int[] dates, double[] numbers)
+	{
+		this.name = name;
+		this.offsets = offsets;
+		this.values = values;
+		this.dates = dates;
+		this.numbers = numbers;
+		this.sets = (Set<String>[]) new Set<?>[offsets.length - 1];
+	}
+
+	public String getName()
+	{
+		return name;
+	}
+
+	// Position of the first value of the entity in the value array
+	public int getStart(int entity)
+	{
+		return offsets[entity];
+	}
+
+	// Position after the last value of the entity in the value array
+	public int getEnd(int entity)
+	{
+		return offsets[entity + 1];
+	}
+
+	public int getValueCount(int entity)
+	{
+		return offsets[entity + 1] - offsets[entity];
+	}
+
+	public String getValue(int position)
+	{
+		return values[position];
+	}
+
+	// Date of the entity, as returned by ANode.getDate
+	public int getDate(int entity)
+	{
+		if (dates != null) return dates[entity];
+		return TypedValues.firstDate(getValueSet(entity));
+	}
+
+	// Number of the entity, as returned by ANode.getNumber
+	public double getNumber(int entity)
+	{
+		if (numbers != null) return numbers[entity];
+		return TypedValues.firstNumber(getValueSet(entity));
+	}
+
+	// Values of the entity, as returned by ANode.getAttribute (the same set on every call)
+	public Set<String> getValueSet(int entity)
+	{
+		if (offsets[entity + 1] == offsets[entity]) return Collections.emptySet();
+		Set<String> set = sets[entity];
+		if (set == null)
+		{
+			// several threads may create a set, they are all equal
+			set = createValueSet(entity);
+			sets[entity] = set;
+		}
+		return set;
+	}
+
+	private Set<String> createValueSet(final int entity)
+	{
+		return new AbstractSet<String>()
+		{
+			@Override
+			public Iterator<String> iterator()
+			{
+				return new Iterator<String>()
+				{
+					private int position = offsets[entity];
+
+					@Override
+					public boolean hasNext()
+					{
+						return position < offsets[entity + 1];
+					}
+
+					@Override
+					public String next()
+					{
+						if (position >= offsets[entity + 1]) throw new NoSuchElementException();
+						return values[position++];
+					}
+
+					@Override
+					public void remove()
+					{
+						throw new UnsupportedOperationException();
+					}
+				};
+			}
+
+			@Override
+			public int size()
+			{
+				return offsets[entity + 1] - offsets[entity];
+			}
+		};
+	}
+}
@@ -0,0 +1,145 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package uma.wdi.ir;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class AttributeDictionary
+{
+	/*
+	 * Dictionary shared by all ANodes: attribute names are encoded as small ints,
+	 * values of low-cardinality attributes (e.g. "platform") are stored once and shared.
+	 * Values of an attribute are only interned as long as the attribute has at most
+	 * MAX_INTERNED_VALUES distinct values, so titles and ids are not kept here.
+	 * Thread-safe, nodes can be loaded in parallel.
+	 */
+
+	public static final int MAX_INTERNED_VALUES = 1024;
+
+	private static final ConcurrentMap<String, Integer> indexes = new ConcurrentHashMap<>();
+	private static volatile String[] names = new String[0];
+	private static volatile ValuePool[] pools = new ValuePool[0];
+	private static volatile AttributeType[] types = new AttributeType[0];
+
+	private AttributeDictionary()
+	{
+	}
+
+	// Index of an attribute name, the name is added if it is new
+	public static int getIndex(String attribute)
+	{
+		Integer index = indexes.get(attribute);
+		if (index != null) return index;
+		return addAttribute(attribute);
+	}
+
+	// Index of an attribute name, -1 if no node has this attribute
+	public static int findIndex(String attribute)
+	{
+		Integer index = indexes.get(attribute);
+		return index == null ? -1 : index;
+	}
+
+	public static String getName(int index)
+	{
+		return names[index];
+	}
+
+	// Number of attribute names
+	public static int size()
+	{
+		return names.length;
+	}
+
+	/* Declares the type of an attribute (STRING by default). Values of DATE and NUMBER attributes are parsed 
+	 * when they are added to a node, so the type should be set before loading */
+	public static synchronized void setType(String attribute, AttributeType type)
+	{
+		int i = getIndex(attribute);
+		AttributeType[] newTypes = types.clone();
+		newTypes[i] = type;
+		types = newTypes;
+	}
+
+	public static AttributeType getType(int index)
+	{
+		return types[index];
+	}
+
+	// Returns the shared instance of the value, if the attribute has a small vocabulary
+	public static String intern(int attribute, String value)
+	{
+		return pools[attribute].intern(value);
+	}
+
+	// Number of distinct values stored for an attribute
+	public static int getInternedCount(int attribute)
+	{
+		return pools[attribute].values.size();
+	}
+
+	// Shared values of an attribute
+	public static Iterable<String> getInternedValues(int attribute)
+	{
+		return pools[attribute].values.keySet();
+	}
+
+	private static synchronized int addAttribute(String attribute)
+	{
+		Integer index = indexes.get(attribute);
+		if (index != null) return index;
+
+		int i = names.length;
+		ValuePool[] newPools = Arrays.copyOf(pools, i + 1);
+		newPools[i] = new ValuePool();
+		AttributeType[] newTypes = Arrays.copyOf(types, i + 1);
+		newTypes[i] = AttributeType.STRING;
+		String[] newNames = Arrays.copyOf(names, i + 1);
+		newNames[i] = attribute;
+		// arrays first, so that an index is never visible before its entries
+		pools = newPools;
+		types = newTypes;
+		names = newNames;
+		indexes.put(attribute, i);
+		return i;
+	}
+
+	private static class ValuePool
+	{
+		private final ConcurrentMap<String, String> values = new ConcurrentHashMap<>();
+		private final AtomicInteger size = new AtomicInteger();
+		private volatile boolean full = false;
+
+		String intern(String value)
+		{
+			String shared = values.get(value);
+			if (shared != null) return shared;
+			if (full) return value;
+
+			if (size.incrementAndGet() > MAX_INTERNED_VALUES)
+			{
+				// high-cardinality attribute, interning would only cost memory
+				full = true;
+				values.clear();
+				return value;
+			}
+			shared = values.putIfAbsent(value, value);
+			return shared == null ? value : shared;
+		}
+	}
+}
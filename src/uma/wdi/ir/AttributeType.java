@@ -0,0 +1,29 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package uma.wdi.ir;
+
+/**
+ * Type of the values of an attribute (see AttributeDictionary.setType): values of DATE and NUMBER 
+ * attributes are parsed once when they are added to a node and kept as primitives (ANode.getDate, ANode.getNumber).
+ *
+ */
+public enum AttributeType
+{
+	STRING,
+	// yyyy, yyyy-mm or yyyy-mm-dd, kept as epoch day (see TypedValues.parseDate)
+	DATE,
+	// decimal number, kept as double
+	NUMBER
+}
@@ -0,0 +1,229 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package uma.wdi.ir;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import uma.wdi.ir.index.BKTree;
+import uma.wdi.ir.similarity.BitParallelEditDistance;
+import uma.wdi.ir.similarity.BitSignature;
+import uma.wdi.ir.similarity.BitSignatureSimilarityFunction;
+import uma.wdi.ir.similarity.DiceSimilarityFunction;
+import uma.wdi.ir.similarity.TokenSetProfile;
+
+public class Benchmarks 
+{
+	/*
+	 * Benchmarks of the similarity prefilters and indexes, separate from the matching runs of IDResolution
+	 */
+	
+	/* Report on BitSignatureSimilarityFunction as a prefilter: loads 2 datasets (given by file paths fn1, fn2) and compares 
+	 * a sample of the values of the attribute in the first with all values in the second, with DiceSimilarityFunction 
+	 * and with bit signatures of several widths. Prints into the console how closely the signature scores track the 
+	 * Dice scores (correlation, mean absolute difference), the share of all pairs a prefilter with minFilterScore 
+	 * rejects and the share of the pairs with a Dice score of at least minDice it loses, and the comparisons 
+	 * per second of both (prepared values, best of 3 runs). Returns the sum of all scores compared in the timed runs 
+	 * (printed by main, so that the comparisons cannot be optimised away), NaN if the datasets cannot be loaded.
+	 * */ 
+	private static double runSignatureReport(String fn1, String fn2, String idPath, String attribute, int sampleSize, double minDice, double minFilterScore)
+	{
+		NodeMap map1 = new NodeMap();
+		NodeMap map2 = new NodeMap();
+		if (!map1.loadFromFileCached(fn1, idPath) || !map2.loadFromFileCached(fn2, idPath)) return Double.NaN;
+		
+		Random random = new Random(42);
+		List<String> values1 = new ArrayList<>();
+		for (int tries = 0; values1.size() < sampleSize && tries < 100 * sampleSize; tries++)
+		{
+			values1.addAll(map1.getNode(random.nextInt(map1.size())).getAttribute(attribute));
+		}
+		List<String> values2 = new ArrayList<>();
+		for (int i = 0; i < map2.size(); i++)
+		{
+			values2.addAll(map2.getNode(i).getAttribute(attribute));
+		}
+		long pairs = (long) values1.size() * values2.size();
+		
+		DiceSimilarityFunction dice = new DiceSimilarityFunction();
+		List<TokenSetProfile> tokens1 = new ArrayList<>();
+		List<TokenSetProfile> tokens2 = new ArrayList<>();
+		for (String value : values1) tokens1.add(dice.prepare(value));
+		for (String value : values2) tokens2.add(dice.prepare(value));
+		
+		// sum of the scores of the timed runs, the result
+		double sum = 0;
+		long diceTime = Long.MAX_VALUE;
+		for (int run = 0; run < 3; run++)
+		{
+			long start = System.nanoTime();
+			for (TokenSetProfile t1 : tokens1)
+			{
+				for (TokenSetProfile t2 : tokens2) sum += dice.comparePrepared(t1, t2);
+			}
+			diceTime = Math.min(diceTime, Math.max(1, System.nanoTime() - start));
+		}
+		System.out.println(pairs + " pairs of " + attribute + " values");
+		System.out.println("signature\tcorrelation\tmean abs. difference\trejected (< " + minFilterScore + ")\tlost (Dice >= " 
+				+ minDice + ")\tcomparisons/s");
+		System.out.println("Dice (tokens)\t1.0\t0.0\t-\t-\t" + pairs * 1000000000L / diceTime);
+		
+		int[] widths = {64, 128, 256, 512};
+		for (int bits : widths)
+		{
+			for (int hashes = 1; hashes <= 2; hashes++)
+			{
+				BitSignatureSimilarityFunction signatures = new BitSignatureSimilarityFunction(
+						BitSignatureSimilarityFunction.Measure.DICE, BitSignatureSimilarityFunction.DEFAULT_Q, bits, hashes);
+				List<BitSignature> signatures1 = new ArrayList<>();
+				List<BitSignature> signatures2 = new ArrayList<>();
+				for (String value : values1) signatures1.add(signatures.prepare(value));
+				for (String value : values2) signatures2.add(signatures.prepare(value));
+				
+				long time = Long.MAX_VALUE;
+				for (int run = 0; run < 3; run++)
+				{
+					long start = System.nanoTime();
+					for (BitSignature b1 : signatures1)
+					{
+						for (BitSignature b2 : signatures2) sum += signatures.comparePrepared(b1, b2);
+					}
+					time = Math.min(time, Math.max(1, System.nanoTime() - start));
+				}
+				
+				// tracking, over the pairs with a Dice score (values with tokens)
+				long n = 0;
+				double sx = 0, sy = 0, sxx = 0, syy = 0, sxy = 0, difference = 0;
+				long similar = 0, rejected = 0, lost = 0;
+				for (int i = 0; i < values1.size(); i++)
+				{
+					for (int j = 0; j < values2.size(); j++)
+					{
+						double x = dice.comparePrepared(tokens1.get(i), tokens2.get(j));
+						if (Double.isNaN(x)) continue;
+						double y = signatures.comparePrepared(signatures1.get(i), signatures2.get(j));
+						n++;
+						sx += x;
+						sy += y;
+						sxx += x * x;
+						syy += y * y;
+						sxy += x * y;
+						difference += Math.abs(x - y);
+						if (x >= minDice) similar++;
+						if (y < minFilterScore)
+						{
+							rejected++;
+							if (x >= minDice) lost++;
+						}
+					}
+				}
+				double correlation = (n * sxy - sx * sy) / Math.sqrt((n * sxx - sx * sx) * (n * syy - sy * sy));
+				System.out.println(bits + " bits, " + hashes + " hash(es)\t" + correlation + "\t" + difference / Math.max(1, n) 
+						+ "\t" + (double) rejected / Math.max(1, n) + "\t" + (double) lost / Math.max(1, similar) + "\t" + pairs * 1000000000L / time);
+			}
+		}
+		return sum;
+	}
+
+	/* Benchmark of BKTree range queries: loads a dataset (given by file path fn), grows a BK-tree over the attribute 
+	 * in steps of doubling size and runs the same sample of queries (values of the dataset) with edit distance 
+	 * maxDistance at each size. Prints the mean query latency and distance computations of the tree, 
+	 * next to a linear scan over the same values, into the console.
+	 * */ 
+	private static void runIndexBenchmark(String fn, String idPath, String attribute, int maxDistance, int queries)
+	{
+		NodeMap map = new NodeMap();
+		if (!map.loadFromFileCached(fn, idPath)) return;
+		
+		// queries: values of random nodes, the same for all sizes
+		Random random = new Random(42);
+		List<String> sample = new ArrayList<>();
+		for (int tries = 0; sample.size() < queries && tries < 100 * queries; tries++)
+		{
+			for (String value : map.getNode(random.nextInt(map.size())).getAttribute(attribute))
+			{
+				sample.add(value);
+				break;
+			}
+		}
+		
+		BKTree tree = new BKTree(map, attribute, 0);
+		// the scan compares with the lowercased values, as the tree does
+		List<char[]> scanned = new ArrayList<>();
+		BitParallelEditDistance distance = new BitParallelEditDistance();
+		System.out.println("nodes\tvalues\tbuild ms\tBK-tree us/query\tcomputations/query\tscan us/query\tresults/query");
+		int added = 0;
+		for (int size = Math.min(1000, map.size()); ; size = Math.min(2 * size, map.size()))
+		{
+			long start = System.nanoTime();
+			for (; added < size; added++) tree.add(added);
+			long build = System.nanoTime() - start;
+			while (scanned.size() < tree.size()) scanned.add(tree.getValue(scanned.size()).toLowerCase().toCharArray());
+			
+			long computations = tree.getComputations();
+			long results = 0;
+			start = System.nanoTime();
+			for (String query : sample)
+			{
+				results += tree.search(query, maxDistance).length;
+			}
+			long treeTime = System.nanoTime() - start;
+			computations = tree.getComputations() - computations;
+			
+			start = System.nanoTime();
+			for (String query : sample)
+			{
+				char[] pattern = query.toLowerCase().toCharArray();
+				distance.setPattern(pattern, pattern.length);
+				for (char[] text : scanned)
+				{
+					distance.distance(text, text.length, maxDistance);
+				}
+			}
+			long scanTime = System.nanoTime() - start;
+			
+			int n = Math.max(1, sample.size());
+			System.out.println(size + "\t" + tree.size() + "\t" + build / 1000000 + "\t" + treeTime / 1000 / n + "\t" 
+					+ computations / n + "\t" + scanTime / 1000 / n + "\t" + (double) results / n);
+			if (size == map.size()) break;
+		}
+	}
+
+	/* Usage: Benchmarks signatures [file1 file2] | index [file], with the videogame datasets of IDResolution by default.
+	 * */ 
+	public static void main(String[] args) 
+	{
+		String fnDataset_1 = args.length > 1 ? args[1] : "resources/videogames/xml/dbpedia_cleaned.xml";
+		String fnDataset_2 = args.length > 2 ? args[2] : "resources/videogames/xml/giantbomb_cleaned.xml";
+		String idPath = "/data/videogame/id";
+		
+		if (args.length > 0 && args[0].equals("signatures"))
+		{
+			double sum = runSignatureReport(fnDataset_1, fnDataset_2, idPath, "title", 1000, 0.5, 0.3);
+			System.out.println("sum of scores: " + sum);
+		}
+		else if (args.length > 0 && args[0].equals("index"))
+		{
+			// one dataset, the second by default
+			runIndexBenchmark(args.length > 1 ? fnDataset_1 : fnDataset_2, idPath, "title", 2, 1000);
+		}
+		else
+		{
+			System.out.println("ERROR: usage: Benchmarks signatures [file1 file2] | index [file]");
+		}
+	}
+
+}
@@ -0,0 +1,281 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/* Read-only, columnar NodeMap: created from a loaded NodeMap (NodeMap.toColumnar()).
+ * Entities are dense int indexes, every attribute is an AttributeColumn (offsets into one shared value array),
+ * string IDs are only needed at the edges (getNode(String), getIndex(String)).
+ * The nodes returned by the getters are row views on the columns, so existing matchers work unchanged;
+ * SimpleMatcher reads the columns directly when it scores a batch of candidates (see Evaluator.setColumnar).
+ * */
+
+package uma.wdi.ir;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+
+public class ColumnarNodeMap extends NodeMap
+{
+	private String[] ids;
+	// ID -> entity index, in index order
+	private Map<String, Integer> idIndex;
+	private Map<String, AttributeColumn> columns = new LinkedHashMap<>();
+	// the same columns by AttributeDictionary index (null: no entity has the attribute), for the lookups per node
+	private AttributeColumn[] columnsByIndex;
+	private Row[] rows;
+	private volatile Map<String, ANode> entries = null;
+
+	public ColumnarNodeMap(NodeMap source)
+	{
+		ANode[] nodes = source.getNodes();
+		int n = nodes.length;
+
+		ids = new String[n];
+		idIndex = new LinkedHashMap<>(n * 2);
+		for (int i = 0; i < n; i++)
+		{
+			ids[i] = nodes[i].getID();
+			idIndex.put(ids[i], i);
+		}
+
+		// number of values per attribute and entity
+		Map<String, int[]> counts = new LinkedHashMap<>();
+		for (int i = 0; i < n; i++)
+		{
+			for (String attribute : nodes[i].getAttributeNames())
+			{
+				int[] c = counts.get(attribute);
+				if (c == null)
+				{
+					c = new int[n];
+					counts.put(attribute, c);
+				}
+				c[i] = nodes[i].getAttribute(attribute).size();
+			}
+		}
+
+		for (Entry<String, int[]> entry : counts.entrySet())
+		{
+			String attribute = entry.getKey();
+			int[] c = entry.getValue();
+			int[] offsets = new int[n + 1];
+			for (int i = 0; i < n; i++)
+			{
+				offsets[i + 1] = offsets[i] + c[i];
+			}
+			String[] values = new String[offsets[n]];
+			for (int i = 0; i < n; i++)
+			{
+				int position = offsets[i];
+				for (String value : nodes[i].getAttribute(attribute))
+				{
+					values[position++] = value;
+				}
+			}
+			// typed attributes: the parsed value of every entity
+			AttributeType type = AttributeDictionary.getType(AttributeDictionary.getIndex(attribute));
+			int[] dates = null;
+			double[] numbers = null;
+			if (type == AttributeType.DATE)
+			{
+				dates = new int[n];
+				for (int i = 0; i < n; i++)
+				{
+					dates[i] = nodes[i].getDate(attribute);
+				}
+			}
+			else if (type == AttributeType.NUMBER)
+			{
+				numbers = new double[n];
+				for (int i = 0; i < n; i++)
+				{
+					numbers[i] = nodes[i].getNumber(attribute);
+				}
+			}
+			columns.put(attribute, new AttributeColumn(attribute, offsets, values, dates, numbers));
+		}
+
+		columnsByIndex = new AttributeColumn[AttributeDictionary.size()];
+		for (AttributeColumn column : columns.values())
+		{
+			columnsByIndex[AttributeDictionary.getIndex(column.getName())] = column;
+		}
+
+		rows = new Row[n];
+		for (int i = 0; i < n; i++)
+		{
+			rows[i] = new Row(i);
+		}
+	}
+
+	// Column of an attribute, null if no entity has the attribute
+	public AttributeColumn getColumn(String attribute)
+	{
+		return getColumn(AttributeDictionary.findIndex(attribute));
+	}
+
+	// Column of an attribute given by its AttributeDictionary index, null if no entity has the attribute
+	public AttributeColumn getColumn(int attribute)
+	{
+		return (attribute < 0 || attribute >= columnsByIndex.length) ? null : columnsByIndex[attribute];
+	}
+
+	public Set<String> getAttributeNames()
+	{
+		return Collections.unmodifiableSet(columns.keySet());
+	}
+
+	@Override
+	public ANode getNode(String id)
+	{
+		Integer index = idIndex.get(id);
+		return index == null ? null : rows[index];
+	}
+
+	@Override
+	public Set<Entry<String, ANode>> getEntrySet()
+	{
+		Map<String, ANode> e = entries;
+		if (e == null)
+		{
+			e = new LinkedHashMap<>(rows.length * 2);
+			for (Row row : rows)
+			{
+				e.put(row.getID(), row);
+			}
+			e = Collections.unmodifiableMap(e);
+			entries = e;
+		}
+		return e.entrySet();
+	}
+
+	@Override
+	public Set<String> getKeySet()
+	{
+		return Collections.unmodifiableSet(idIndex.keySet());
+	}
+
+	@Override
+	public int size()
+	{
+		return ids.length;
+	}
+
+	@Override
+	public String getID(int index)
+	{
+		return ids[index];
+	}
+
+	@Override
+	public int getIndex(String id)
+	{
+		Integer index = idIndex.get(id);
+		return index == null ? -1 : index;
+	}
+
+	@Override
+	protected ANode[] getNodes()
+	{
+		return rows;
+	}
+
+	@Override
+	protected void put(ANode node)
+	{
+		throw new UnsupportedOperationException("a columnar node map is read-only, load the data into a NodeMap");
+	}
+
+	/*
+	 * ANode view on one entity (row) of the columns
+	 */
+	private class Row extends ANode
+	{
+		private final int index;
+
+		Row(int index)
+		{
+			super(ids[index]);
+			this.index = index;
+		}
+
+		@Override
+		public void addAttribute(String attribute, String value)
+		{
+			throw new UnsupportedOperationException("a columnar node map is read-only");
+		}
+
+		@Override
+		public Set<String> getAttribute(String attribute)
+		{
+			return getAttribute(AttributeDictionary.findIndex(attribute));
+		}
+
+		@Override
+		public Set<String> getAttribute(int attribute)
+		{
+			AttributeColumn column = getColumn(attribute);
+			return column == null ? Collections.<String>emptySet() : column.getValueSet(index);
+		}
+
+		@Override
+		public int getDate(int attribute)
+		{
+			AttributeColumn column = getColumn(attribute);
+			return column == null ? TypedValues.NO_DATE : column.getDate(index);
+		}
+
+		@Override
+		public double getNumber(int attribute)
+		{
+			AttributeColumn column = getColumn(attribute);
+			return column == null ? Double.NaN : column.getNumber(index);
+		}
+
+		@Override
+		public boolean hasAttribute(String key)
+		{
+			AttributeColumn column = getColumn(AttributeDictionary.findIndex(key));
+			return column != null && column.getValueCount(index) > 0;
+		}
+
+		@Override
+		public Set<String> getAttributeNames()
+		{
+			Set<String> names = new LinkedHashSet<>();
+			for (AttributeColumn column : columns.values())
+			{
+				if (column.getValueCount(index) > 0) names.add(column.getName());
+			}
+			return names;
+		}
+
+		@Override
+		public void printAttributeNode()
+		{
+			System.out.println("> " + getID());
+			for (String attribute : getAttributeNames())
+			{
+				System.out.println("\t" + attribute);
+				for (String value : getAttribute(attribute))
+				{
+					System.out.println("\t\t" + value);
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,71 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package uma.wdi.ir;
+
+import java.util.Arrays;
+
+public class DoubleList
+{
+	/*
+	 * Growable list of primitive doubles (e.g. matching scores), no boxing.
+	 */
+
+	private double[] values;
+	private int size = 0;
+
+	public DoubleList()
+	{
+		this(16);
+	}
+
+	public DoubleList(int capacity)
+	{
+		values = new double[Math.max(1, capacity)];
+	}
+
+	public void add(double value)
+	{
+		if (size == values.length)
+		{
+			values = Arrays.copyOf(values, size * 2);
+		}
+		values[size++] = value;
+	}
+
+	public void addAll(DoubleList other)
+	{
+		if (size + other.size > values.length)
+		{
+			values = Arrays.copyOf(values, Math.max(size + other.size, size * 2));
+		}
+		System.arraycopy(other.values, 0, values, size, other.size);
+		size += other.size;
+	}
+
+	public double get(int index)
+	{
+		return values[index];
+	}
+
+	public int size()
+	{
+		return size;
+	}
+
+	public double[] toArray()
+	{
+		return Arrays.copyOf(values, size);
+	}
+}
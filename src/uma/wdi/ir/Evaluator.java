@@ -24,18 +24,18 @@ package uma.wdi.ir;
 
 import java.io.*;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.Date;
-import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
 import java.util.Random;
-import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
 
+import uma.wdi.ir.blocking.BlockIndex;
 import uma.wdi.ir.blocking.BlockingOperator;
 import uma.wdi.ir.blocking.BlockingByYear;
 import uma.wdi.ir.blocking.NoBlockingOperator;
+import uma.wdi.ir.index.AbstractSimilarityJoin;
 import uma.wdi.ir.matching.LevensteinTitleMatcher;
 import uma.wdi.ir.matching.AbstractMatcher;
 
@@ -62,15 +62,65 @@ public class Evaluator
 	
 	private long countMatchingOperations = -1;
 	
+	// pool for matching the blocks in parallel, null: sequential matching
+	private ForkJoinPool pool = null;
+	// the pool was created by setParallelism (and is shut down when replaced)
+	private boolean ownPool = false;
+	// blocks with more pairs are split into tiles for parallel matching
+	private long tileSize = MatchingEngine.DEFAULT_TILE_SIZE;
+	// match on columnar copies of the maps (see setColumnar)
+	private boolean columnar = false;
+	// engine of the last calculateScores, keeps the block statistics
+	private MatchingEngine engine = null;
+	
 	private String separator = "---";
 	
-	// id1 separator id2, where id1 precedes id2 (e.g. id1---id2) => double 0..1 matching score
-	private Map<String, Double> gold = new HashMap<String, Double>();
-	private Set<String> result = new HashSet<String>();
+	// codes of the IDs of the maps and the gold standard, a pair is stored as one packed long (code1, code2)
+	private IDDictionary ids = new IDDictionary();
+	// pairs (id1, id2), where id1 precedes id2
+	private LongHashSet gold = new LongHashSet();
+	private LongHashSet result = new LongHashSet();
 
-	// for calculating the precision
-	private Set<String> gold_ids = new HashSet<String>();
+	// for calculating the precision: codes of the ids in the gold standard
+	private BitSet gold_ids = new BitSet();
 
+	/* Match the blocks on several threads (threads < 2: sequential matching, the default).
+	 * The results are the same as with sequential matching, the matcher has to be thread-safe. 
+	 * The pool is kept while the number of threads does not change; a pool created here is shut down when it is replaced. */
+	public void setParallelism(int threads)
+	{
+		if (threads > 1 && ownPool && pool.getParallelism() == threads) return;
+		ForkJoinPool newPool = (threads > 1) ? new ForkJoinPool(threads) : null;
+		replacePool(newPool);
+		ownPool = newPool != null;
+	}
+	
+	// Match the blocks on the given pool (null: sequential matching), the caller shuts it down
+	public void setPool(ForkJoinPool pool)
+	{
+		replacePool(pool);
+		ownPool = false;
+	}
+	
+	private void replacePool(ForkJoinPool newPool)
+	{
+		if (ownPool && pool != newPool) pool.shutdown();
+		pool = newPool;
+	}
+	
+	/* Match on columnar copies of the maps (ColumnarNodeMap), which batch scoring reads as arrays. 
+	 * Maps that are columnar already are used as they are, others are copied in every run (counted in the run time) */
+	public void setColumnar(boolean columnar)
+	{
+		this.columnar = columnar;
+	}
+	
+	// Split blocks with more than tileSize pairs into tiles that idle threads can take over (parallel matching only)
+	public void setTileSize(long tileSize)
+	{
+		this.tileSize = tileSize;
+	}
+	
 	/* Main function:  load gold standard -> calculate matching scores -> evaluate results */
 	public boolean evaluate(NodeMap m1, NodeMap m2, String goldStandard, BlockingOperator bo, AbstractMatcher ma)
 	{
@@ -85,12 +135,75 @@ public class Evaluator
 		return false;
 	}
 	
+	// Main function, matching with a similarity join (index) instead of blocking and a matcher
+	public boolean evaluate(NodeMap m1, NodeMap m2, String goldStandard, AbstractSimilarityJoin join)
+	{
+		if (loadGold(goldStandard))
+		{
+			if (calculateScores(m1,m2,join))
+			{
+				return evaluateMatching();
+			}
+		}
+		
+		return false;
+	}
+	
 	// Main function, with some default values
 	public boolean evaluate(NodeMap m1, NodeMap m2, String goldStandard)
 	{
 		return evaluate(m1, m2, goldStandard, new NoBlockingOperator(), new LevensteinTitleMatcher());
 	}	
 	
+	/* Tuning of the matcher threshold: matches once, keeping the score of every compared pair, and computes
+	 * P, R, F1 for all thresholds (the threshold set in ma is ignored). Same results as calling evaluate 
+	 * with each threshold on a new Evaluator. Does not change the result set; returns null on errors.
+	 * */
+	public ThresholdSweep evaluateThresholds(NodeMap m1, NodeMap m2, String goldStandard, BlockingOperator bo, AbstractMatcher ma, double[] thresholds)
+	{
+		if (thresholds.length == 0 || !loadGold(goldStandard)) return null;
+		
+		ma.resetCounter();
+		Long startTime = new Date().getTime();
+		if (columnar)
+		{
+			NodeMap c1 = toColumnar(m1);
+			m2 = (m1 == m2) ? c1 : toColumnar(m2);
+			m1 = c1;
+		}
+		BlockIndex index1 = new BlockIndex(m1, bo);
+		BlockIndex index2 = (m1 == m2) ? index1 : new BlockIndex(m2, bo);
+		engine = new MatchingEngine(pool);
+		engine.setTileSize(tileSize);
+		// pairs below the lowest threshold are a match at no threshold, they are not kept
+		double minScore = thresholds[0];
+		for (double t : thresholds) minScore = Math.min(minScore, t);
+		DoubleList scores = new DoubleList();
+		LongList pairs = engine.score(index1, index2, ma, minScore, scores);
+		
+		// only pairs in the gold standard and pairs with an ID in the gold standard count (see getPartialResultSize)
+		int[] codes1 = ids.addAll(m1);
+		int[] codes2 = (m1 == m2) ? codes1 : ids.addAll(m2);
+		DoubleList correctScores = new DoubleList();
+		DoubleList otherScores = new DoubleList();
+		for (int k = 0; k < pairs.size(); k++)
+		{
+			long pair = pairs.get(k);
+			int id1 = codes1[LongList.first(pair)];
+			int id2 = codes2[LongList.second(pair)];
+			if (gold.contains(LongList.pack(id1, id2))) correctScores.add(scores.get(k));
+			else if (gold_ids.get(id1) || gold_ids.get(id2)) otherScores.add(scores.get(k));
+		}
+		ThresholdSweep sweep = new ThresholdSweep(thresholds, correctScores.toArray(), otherScores.toArray(), gold.size());
+		
+		Long endTime = new Date().getTime();
+		runTime = endTime - startTime;
+		runTimeMin = (endTime - startTime)/60000;
+		countMatchingOperations = ma.getCount();
+		
+		return sweep;
+	}
+	
 	// Writes a CSV file that can be loaded in RapidMiner for linear regression 
 	public boolean writeInputFileForLinearRegression(NodeMap m1, NodeMap m2, String goldStandard, String filenameOutput, List<AbstractMatcher> matchers)
 	{
@@ -109,17 +222,18 @@ public class Evaluator
 			if (loadGold(goldStandard))
 			{
 				// do the true positives
-				for(Map.Entry<String,Double> goldEntry : gold.entrySet()) {
+				for(long goldPair : gold.toArray()) {
 					line = new StringBuffer();
 					
-					String[] ids = splitIDs(goldEntry.getKey());
-					ANode n1 = m1.getNode(ids[0]);
-					ANode n2 = m2.getNode(ids[1]);
+					String id1 = ids.getID(LongList.first(goldPair));
+					String id2 = ids.getID(LongList.second(goldPair));
+					ANode n1 = m1.getNode(id1);
+					ANode n2 = m2.getNode(id2);
 					if(n1==null) 
 					{
 						// then it's the other way round
-						n1 = m2.getNode(ids[0]);
-						n2 = m1.getNode(ids[1]);
+						n1 = m2.getNode(id1);
+						n2 = m1.getNode(id2);
 						if (n1 == null)
 						{
 							System.out.println("Cannot build input for linear regression: gold standard does not match the data");
@@ -134,31 +248,24 @@ public class Evaluator
 				// do the negative examples - exactly as many as positive
 				int positiveExamples = gold.size();
 				int negativeExamples = 0;
-				List<String> ids1 = new ArrayList<String>(m1.getKeySet());
-				List<String> ids2 = new ArrayList<String>(m2.getKeySet());
 				Random random = new Random();
 
 				while(negativeExamples<positiveExamples) {
 					line = new StringBuffer();
 					
 					// select two random IDs
-					int i1 = random.nextInt(ids1.size());
-					int i2 = random.nextInt(ids2.size());
+					int i1 = random.nextInt(m1.size());
+					int i2 = random.nextInt(m2.size());
 					
-					String id1 = ids1.get(i1);
-					String id2 = ids2.get(i2);
+					String id1 = m1.getID(i1);
+					String id2 = m2.getID(i2);
 					
 					// check if we accidentally hit a positive example
-					if(gold.containsKey(concatAnyIDs(id1, id2)))
+					if(gold.contains(findAnyPair(id1, id2)))
 						continue;
 					
-					ANode n1 = m1.getNode(id1);
-					ANode n2 = m2.getNode(id2);
-					if(n1==null) {
-						// then it's the other way round
-						n1 = m2.getNode(id1);
-						n2 = m1.getNode(id2);
-					}
+					ANode n1 = m1.getNode(i1);
+					ANode n2 = m2.getNode(i2);
 					for(AbstractMatcher matcher : matchers)
 						line.append(matcher.doMatch(n1, n2) + ",");
 					fw.write(line + "0.0" + System.lineSeparator());
@@ -178,9 +285,9 @@ public class Evaluator
 	private boolean evaluateMatching()
 	{
 		double tp = 0; // number of true positives
-        for (String entry : result) 
+        for (long pair : result.toArray()) 
         {
-    	    if (gold.containsKey(entry)) tp = tp + 1;
+    	    if (gold.contains(pair)) tp = tp + 1;
         }
 	    R = tp/gold.size();
 	    int prs = getPartialResultSize();
@@ -199,15 +306,16 @@ public class Evaluator
 	private int getPartialResultSize()
 	{
 		int prs = result.size();
-		for (String entry : result)
+		for (long pair : result.toArray())
 		{
-			String[] ids = splitIDs(entry);
+			int id1 = LongList.first(pair);
+			int id2 = LongList.second(pair);
 			/* - another option, yielding higher precision, count only the id pairs in the result both of which are in the gold standard:
-			* if (!gold_ids.contains(ids[0]) || !gold_ids.contains(ids[1])) prs--;
+			* if (!gold_ids.get(id1) || !gold_ids.get(id2)) prs--;
 			*/ 
-    	    if (!gold_ids.contains(ids[0]) && !gold_ids.contains(ids[1])) 
+    	    if (!gold_ids.get(id1) && !gold_ids.get(id2)) 
     	    {
-    	    	// System.out.println("1 - "+ids[0]+", 2 - "+ids[1]);
+    	    	// System.out.println("1 - "+ids.getID(id1)+", 2 - "+ids.getID(id2));
     	    	prs--;
     	    }
         }
@@ -225,24 +333,31 @@ public class Evaluator
 		System.out.println("Runtime in min. = " + runTimeMin);
 		if (printResList)
 		{
-			for (String id : result) 
+			for (long pair : result.toArray()) 
 	        {
-	    	    System.out.println(id);
+	    	    System.out.println(concatIDs(pair));
 	        }
 		}
 		
 		return true;
 	}
 	
+	// Print size and time of the top blocks of the last matching run into console
+	public boolean printBlockStatistics(int top)
+	{
+		if (engine == null) return false;
+		engine.printBlockStatistics(top);
+		return true;
+	}
+	
 	// Print results to file
 	public boolean outputResultsToFile(String filename) {
 		try 
 		{
 			FileWriter fw = new FileWriter(filename);
-			for(String id : result)
+			for(long pair : result.toArray())
 			{
-				String[] ids = splitIDs(id);
-				fw.write(ids[0] + "," + ids[1] + System.lineSeparator());
+				fw.write(ids.getID(LongList.first(pair)) + "," + ids.getID(LongList.second(pair)) + System.lineSeparator());
 			}				
 			fw.close();
 		} catch (IOException e) {
@@ -272,10 +387,12 @@ public class Evaluator
 						return false;	
 					}
 					// store list of ids in the gold standard
-					if (!gold_ids.contains(ids[0])) gold_ids.add(ids[0]);
-					if (!gold_ids.contains(ids[1])) gold_ids.add(ids[1]);					
+					int code1 = this.ids.add(ids[0]);
+					int code2 = this.ids.add(ids[1]);
+					gold_ids.set(code1);
+					gold_ids.set(code2);
 					
-					gold.put(concatAnyIDs(ids[0],ids[1]), 1.0);
+					gold.add(packAnyIDs(ids[0], code1, ids[1], code2));
 				}
 			}
 			fileReader.close();
@@ -297,29 +414,19 @@ public class Evaluator
 		
 		// Start logging time
 		Long startTime = new Date().getTime();
-        for (String id1 : m1.getKeySet()) 
-        {
-            for (String id2 : m2.getKeySet()) 
-            {
-            	String res = concatPrecedingIDs(id1,id2);
-            	if (res != null) // id1 precedes id2
-            	{
-            		// here's the blocking
-            		ANode n1 = m1.getNode(id1);
-            		ANode n2 = m2.getNode(id2);
-            		String key1 = bo.getBlockingKey(n1);
-            		String key2 = bo.getBlockingKey(n2);
-            		
-            		if(key1 != null && key2 != null && key1.equals(key2)) 
-            		{
-            			if(ma.match(n1, n2))
-	            		{
-	            			result.add(res);
-	            		}
-            		}
-            	}
-            }
-        }        
+		if (columnar)
+		{
+			NodeMap c1 = toColumnar(m1);
+			m2 = (m1 == m2) ? c1 : toColumnar(m2);
+			m1 = c1;
+		}
+		// group both maps by blocking key once, compare only the nodes sharing a key
+		BlockIndex index1 = new BlockIndex(m1, bo);
+		BlockIndex index2 = (m1 == m2) ? index1 : new BlockIndex(m2, bo);
+		engine = new MatchingEngine(pool);
+		engine.setTileSize(tileSize);
+		LongList matches = engine.match(index1, index2, ma);
+		addResults(m1, m2, matches);
 		// End logging time
         Long endTime = new Date().getTime();
         runTime = endTime - startTime;
@@ -330,33 +437,65 @@ public class Evaluator
         return true;
 	}
 	
-	/* Three functions that allow comparing (s1,s2) only once, without repeating for (s2,s1) */
+	private static NodeMap toColumnar(NodeMap map)
+	{
+		return (map instanceof ColumnarNodeMap) ? map : map.toColumnar();
+	}
+	
+	/* Compare only the nodes in m1 and m2 that the join's index cannot rule out, same result as calculateScores  
+	 * with NoBlockingOperator and a SimpleMatcher on the join's attribute, function and threshold */
+	public boolean calculateScores(NodeMap m1, NodeMap m2, AbstractSimilarityJoin join)
+	{
+		Long startTime = new Date().getTime();
+		engine = null;
+		addResults(m1, m2, join.join(m1, m2));
+		Long endTime = new Date().getTime();
+		runTime = endTime - startTime;
+		runTimeMin = (endTime - startTime)/60000;
+		
+		countMatchingOperations = join.getVerified();
+		
+		return true;
+	}
+	
+	// Adds matched pairs (i, j) with id1 preceding id2; only the indexes are translated to codes
+	private void addResults(NodeMap m1, NodeMap m2, LongList matches)
+	{
+		int[] codes1 = ids.addAll(m1);
+		int[] codes2 = (m1 == m2) ? codes1 : ids.addAll(m2);
+		for (int k = 0; k < matches.size(); k++)
+		{
+			long pair = matches.get(k);
+			result.add(LongList.pack(codes1[LongList.first(pair)], codes2[LongList.second(pair)]));
+		}
+	}
+	
+	/* Functions that allow comparing (s1,s2) only once, without repeating for (s2,s1) 
+	 * (calculateScores only compares id1 with the IDs it precedes, see BlockIndex.firstNotBefore) */
 	// Returns true if s1 precedes s2
 	private boolean ifPrecedes(String s1, String s2)
 	{
 		return (s1.compareTo(s2) <= 0);
 	}
-	// Returns concatenated string or null if ifPrecedes is false
-	private String concatPrecedingIDs(String id1, String id2)
+	// Returns the packed pair (code1, code2) or (code2, code1), depending on precedence of the IDs
+	private long packAnyIDs(String id1, int code1, String id2, int code2)
 	{
-		if (ifPrecedes(id1,id2)) return concatIDs(id1,id2);
-		return null;
-	}	
-	// Returns concatenated string, s1-s2 or s2-s1, depending on precedence
-	private String concatAnyIDs(String id1, String id2)
+		if (ifPrecedes(id1,id2)) return LongList.pack(code1, code2);
+		return LongList.pack(code2, code1);
+	}
+	// Packed pair of two IDs, -1 if one of them has no code (then the pair is in no set)
+	private long findAnyPair(String id1, String id2)
 	{
-		if (ifPrecedes(id1,id2)) return concatIDs(id1,id2);
-		return concatIDs(id2,id1);
+		int code1 = ids.find(id1);
+		int code2 = ids.find(id2);
+		if (code1 < 0 || code2 < 0) return -1;
+		return packAnyIDs(id1, code1, id2, code2);
 	}
-	// Basic method, returns concatenated string, s1-s2
-	private String concatIDs(String id1, String id2)
+	// Returns concatenated string of a packed pair, id1-id2
+	private String concatIDs(long pair)
 	{
-		return id1+separator+id2;
+		return ids.getID(LongList.first(pair))+separator+ids.getID(LongList.second(pair));
 	}	
-	
-	private String[] splitIDs(String s) {
-		return s.split(separator);
-	}
 
 	// Getters 
 	public double getF1() {
@@ -379,7 +518,13 @@ public class Evaluator
 		return countMatchingOperations;
 	}
 
+	// Matched pairs as strings id1---id2, built on each call
 	public Collection<String> getResult() {
-		return result;
+		List<String> pairs = new ArrayList<String>(result.size());
+		for (long pair : result.toArray())
+		{
+			pairs.add(concatIDs(pair));
+		}
+		return pairs;
 	}
 }
@@ -0,0 +1,71 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package uma.wdi.ir;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class IDDictionary
+{
+	/*
+	 * Dense int codes for entity IDs, shared by the maps being matched and the gold standard,
+	 * so that a pair of IDs can be stored as one packed long (see LongList.pack).
+	 * The same ID always gets the same code, whichever map or file it comes from.
+	 */
+
+	private Map<String, Integer> codes = new HashMap<>();
+	private List<String> ids = new ArrayList<>();
+
+	// Code of an ID, a new code is assigned if the ID is new
+	public int add(String id)
+	{
+		Integer code = codes.get(id);
+		if (code != null) return code;
+		code = ids.size();
+		codes.put(id, code);
+		ids.add(id);
+		return code;
+	}
+
+	// Code of an ID, -1 if the ID has no code
+	public int find(String id)
+	{
+		Integer code = codes.get(id);
+		return code == null ? -1 : code;
+	}
+
+	public String getID(int code)
+	{
+		return ids.get(code);
+	}
+
+	// Codes of all nodes of a map, by dense index of the node
+	public int[] addAll(NodeMap map)
+	{
+		int[] mapCodes = new int[map.size()];
+		for (int i = 0; i < mapCodes.length; i++)
+		{
+			mapCodes[i] = add(map.getID(i));
+		}
+		return mapCodes;
+	}
+
+	public int size()
+	{
+		return ids.size();
+	}
+}
@@ -14,12 +14,15 @@
 
 package uma.wdi.ir;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.List;
 
 import uma.wdi.ir.blocking.BlockingByTitle;
 import uma.wdi.ir.blocking.BlockingOperator;
 import uma.wdi.ir.matching.AbstractMatcher;
 import uma.wdi.ir.matching.LevensteinTitleMatcher;
+import uma.wdi.ir.similarity.CorpusStatistics;
 
 public class IDResolution 
 {
@@ -45,17 +48,52 @@ public class IDResolution
 	/* Loads and runs evaluation for 2 datasets (given by file paths fn1, fn2) w.r.t. gold standard (given by file path fnGold),
 	 * xpath for unique IDs (idPath), with blocking operator bo and matching strategy ma.
 	 * Prints the results into the console if print it true. 
+	 * Parsed datasets are kept as snapshots next to the xml files (fn1 + ".nodemap"), see NodeMap.loadFromFileCached.
 	 * */ 
 	private static void runEvaluation(String fn1, String fn2, String idPath, String fnGold, BlockingOperator bo, AbstractMatcher ma, boolean print)
 	{
 		NodeMap map1 = new NodeMap();
 		NodeMap map2 = new NodeMap();		
-		if (map1.loadFromFile(fn1, idPath) && map2.loadFromFile(fn2, idPath))
+		if (map1.loadFromFileCached(fn1, idPath) && map2.loadFromFileCached(fn2, idPath))
 		{
 			runEvaluation(map1, map2, fnGold, bo, ma, print);	
 		}
 	}
 	
+	/* Loads the document frequencies of the titles of 2 datasets (given by file paths fn1, fn2) for the TF-IDF matchers
+	 * from fnStatistics, or counts them and writes them to fnStatistics if the file does not exist yet, 
+	 * so they are counted only once for all runs. Returns null if the datasets cannot be loaded.
+	 * */ 
+	private static CorpusStatistics loadCorpusStatistics(String fn1, String fn2, String idPath, String fnStatistics)
+	{
+		if (new File(fnStatistics).exists())
+		{
+			try
+			{
+				return CorpusStatistics.load(fnStatistics);
+			}
+			catch (IOException e)
+			{
+				System.out.println("ERROR: cannot read " + fnStatistics + ", counting again: " + e.getMessage());
+			}
+		}
+		
+		NodeMap map1 = new NodeMap();
+		NodeMap map2 = new NodeMap();		
+		if (!map1.loadFromFileCached(fn1, idPath) || !map2.loadFromFileCached(fn2, idPath)) return null;
+		
+		CorpusStatistics statistics = CorpusStatistics.build("title", map1, map2);
+		try
+		{
+			statistics.save(fnStatistics);
+		}
+		catch (IOException e)
+		{
+			System.out.println("ERROR: cannot write " + fnStatistics + ": " + e.getMessage());
+		}
+		return statistics;
+	}
+	
 	/* Loads and runs evaluation for 2 datasets (given by file paths fn1, fn2) w.r.t. gold standard (given by file path fnGold),
 	 * xpath for unique IDs (idPath), with blocking operator bo and matching strategy ma.
 	 * Prints the results into fnOutput file. 
@@ -66,7 +104,7 @@ public class IDResolution
 		NodeMap map2 = new NodeMap();	
 		
 		Evaluator eval = new Evaluator();
-		if (map1.loadFromFile(fn1, idPath) && map2.loadFromFile(fn2, idPath))
+		if (map1.loadFromFileCached(fn1, idPath) && map2.loadFromFileCached(fn2, idPath))
 		{
 			if(eval.calculateScores(map1, map2, bo, ma)) 
 			{
@@ -75,6 +113,23 @@ public class IDResolution
 		}
 	}
 
+	/* Loads 2 datasets (given by file paths fn1, fn2) and evaluates the matching strategy ma w.r.t. gold standard (given by file path fnGold)
+	 * for all thresholds from 0 to 1 in steps of 0.05, with a single matching run. 
+	 * Prints P, R, F1 per threshold and the best threshold into the console.
+	 * */ 
+	private static void runThresholdTuning(String fn1, String fn2, String idPath, String fnGold, BlockingOperator bo, AbstractMatcher ma)
+	{
+		NodeMap map1 = new NodeMap();
+		NodeMap map2 = new NodeMap();	
+		
+		Evaluator eval = new Evaluator();
+		if (map1.loadFromFileCached(fn1, idPath) && map2.loadFromFileCached(fn2, idPath))
+		{
+			ThresholdSweep sweep = eval.evaluateThresholds(map1, map2, fnGold, bo, ma, ThresholdSweep.grid(0.0, 1.0, 0.05));
+			if (sweep != null) sweep.printResults();
+		}
+	}
+
 	/* Constructs .cvs file for RapidMiner for 2 datasets (given by file paths fn1, fn2), gold standard (given by file path fnGold),
 	 * xpath for unique IDs (idPath) and a list of matchers (matchers). 
 	 * Prints the results into fnOutput file.  
@@ -84,7 +139,7 @@ public class IDResolution
 		NodeMap map2 = new NodeMap();	
 		
 		Evaluator eval = new Evaluator();
-		if (map1.loadFromFile(fn1, idPath) && map2.loadFromFile(fn2, idPath))
+		if (map1.loadFromFileCached(fn1, idPath) && map2.loadFromFileCached(fn2, idPath))
 		{
 			eval.writeInputFileForLinearRegression(map1, map2, fnGold, fnOutput, matchers);
 		}
@@ -95,6 +150,9 @@ public class IDResolution
 	{
 		System.out.println("-- 2014 version --");
 		
+		// release dates are parsed once when loading (BlockingByYear and DateMatcher, e.g. in TitleDateMatcher, read "release")
+		AttributeDictionary.setType("release", AttributeType.DATE);
+		
 		// PROJECT TODO: SPECIFY YOUR INPUT PARAMETERS HERE
 		// gold standard file
 		String fnGold_1 = "resources/videogames/gold_1.csv";
@@ -153,6 +211,10 @@ public class IDResolution
 //		System.out.println();
 //		System.out.println("WITH BLOCKING, Cosine:");
 //		runEvaluation(fnDataset1, fnDataset2, idPath, fnGold, new BlockingByTitle(), new CosineTitleMatcher(), true);
+//		System.out.println();
+//		System.out.println("DBP <==> GB, WITH BLOCKING, SoftTFIDF:");
+//		CorpusStatistics statistics_1 = loadCorpusStatistics(fnDataset_1_1, fnDataset_1_2, idPath, "resources/videogames/titles-1-2.tfidf");
+//		runEvaluation(fnDataset_1_1, fnDataset_1_2, idPath, fnGold_1, new BlockingByTitle(), new SoftTFIDFTitleMatcher(statistics_1), true);
 		System.out.println("-------------------------------");
 
 //		System.out.println("Matching by dates only");
@@ -174,6 +236,8 @@ public class IDResolution
 		runOutputResults(fnDataset_1_1, fnDataset_1_2, idPath, fnOutput_1, new BlockingByTitle(), new LevensteinTitleMatcher());
 		runOutputResults(fnDataset_2_1, fnDataset_2_2, idPath, fnOutput_2, new BlockingByTitle(), new LevensteinTitleMatcher());
 		
+//		runThresholdTuning(fnDataset_1_1, fnDataset_1_2, idPath, fnGold_1, new BlockingByTitle(), new LevensteinTitleMatcher());
+		
 //		List<AbstractMatcher> matchers = Arrays.asList(new AbstractMatcher[]{new DemoTitleMatcher(),new DemoDateMatcher()});
 //		runWriteRegressionFile(fnDataset1, fnDataset2, idPath, fnGold, fnRegression, matchers);
 		
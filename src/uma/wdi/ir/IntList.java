@@ -0,0 +1,82 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package uma.wdi.ir;
+
+import java.util.Arrays;
+
+public class IntList
+{
+	/*
+	 * Growable list of primitive ints (e.g. dense node indexes), no boxing.
+	 */
+
+	private int[] values;
+	private int size = 0;
+
+	public IntList()
+	{
+		this(16);
+	}
+
+	public IntList(int capacity)
+	{
+		values = new int[Math.max(1, capacity)];
+	}
+
+	public void add(int value)
+	{
+		if (size == values.length)
+		{
+			values = Arrays.copyOf(values, size * 2);
+		}
+		values[size++] = value;
+	}
+
+	public void addAll(IntList other)
+	{
+		if (size + other.size > values.length)
+		{
+			values = Arrays.copyOf(values, Math.max(size + other.size, size * 2));
+		}
+		System.arraycopy(other.values, 0, values, size, other.size);
+		size += other.size;
+	}
+
+	public int get(int index)
+	{
+		return values[index];
+	}
+
+	public void set(int index, int value)
+	{
+		values[index] = value;
+	}
+
+	// Removes and returns the last value (use as a stack)
+	public int removeLast()
+	{
+		return values[--size];
+	}
+
+	public int size()
+	{
+		return size;
+	}
+
+	public int[] toArray()
+	{
+		return Arrays.copyOf(values, size);
+	}
+}
@@ -0,0 +1,147 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package uma.wdi.ir;
+
+import java.util.Arrays;
+
+public class LongHashSet
+{
+	/*
+	 * Set of primitive longs (e.g. packed pairs of entity indexes), open addressing with linear probing.
+	 * About 8-16 bytes per element instead of a boxed or string key plus a HashMap entry.
+	 */
+
+	private static final long FREE = 0;
+	private static final int MIN_CAPACITY = 16;
+
+	private long[] table;
+	private int size = 0;
+	// FREE marks empty slots, so the value FREE itself is kept aside
+	private boolean hasFreeValue = false;
+
+	public LongHashSet()
+	{
+		this(MIN_CAPACITY);
+	}
+
+	public LongHashSet(int expectedSize)
+	{
+		table = new long[capacityFor(expectedSize)];
+	}
+
+	// Returns true if the value was not in the set yet
+	public boolean add(long value)
+	{
+		if (value == FREE)
+		{
+			if (hasFreeValue) return false;
+			hasFreeValue = true;
+			size++;
+			return true;
+		}
+
+		int mask = table.length - 1;
+		int slot = hash(value) & mask;
+		while (table[slot] != FREE)
+		{
+			if (table[slot] == value) return false;
+			slot = (slot + 1) & mask;
+		}
+		table[slot] = value;
+		size++;
+		// load factor at most 0.75
+		if (4L * size > 3L * table.length) rehash(table.length * 2);
+		return true;
+	}
+
+	public boolean contains(long value)
+	{
+		if (value == FREE) return hasFreeValue;
+
+		int mask = table.length - 1;
+		int slot = hash(value) & mask;
+		while (table[slot] != FREE)
+		{
+			if (table[slot] == value) return true;
+			slot = (slot + 1) & mask;
+		}
+		return false;
+	}
+
+	public int size()
+	{
+		return size;
+	}
+
+	public boolean isEmpty()
+	{
+		return size == 0;
+	}
+
+	public void clear()
+	{
+		Arrays.fill(table, FREE);
+		hasFreeValue = false;
+		size = 0;
+	}
+
+	// Elements of the set, in no particular order
+	public long[] toArray()
+	{
+		long[] values = new long[size];
+		int k = 0;
+		if (hasFreeValue) values[k++] = FREE;
+		for (long value : table)
+		{
+			if (value != FREE) values[k++] = value;
+		}
+		return values;
+	}
+
+	private void rehash(int capacity)
+	{
+		long[] old = table;
+		table = new long[capacity];
+		int mask = capacity - 1;
+		for (long value : old)
+		{
+			if (value == FREE) continue;
+			int slot = hash(value) & mask;
+			while (table[slot] != FREE)
+			{
+				slot = (slot + 1) & mask;
+			}
+			table[slot] = value;
+		}
+	}
+
+	// Power of two with room for expectedSize elements at load factor 0.75
+	private static int capacityFor(int expectedSize)
+	{
+		long needed = Math.max(MIN_CAPACITY, (4L * expectedSize + 2) / 3 + 1);
+		return (int) Math.min(1 << 30, Long.highestOneBit(needed - 1) << 1);
+	}
+
+	// Mixes all bits (finalizer of MurmurHash3), packed pairs differ mostly in the low bits of each half
+	private static int hash(long value)
+	{
+		value ^= value >>> 33;
+		value *= 0xff51afd7ed558ccdL;
+		value ^= value >>> 33;
+		value *= 0xc4ceb9fe1a85ec53L;
+		value ^= value >>> 33;
+		return (int) value;
+	}
+}
@@ -0,0 +1,87 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package uma.wdi.ir;
+
+import java.util.Arrays;
+
+public class LongList
+{
+	/*
+	 * Growable list of primitive longs (e.g. packed pairs of entity indexes), no boxing.
+	 */
+
+	private long[] values;
+	private int size = 0;
+
+	public LongList()
+	{
+		this(16);
+	}
+
+	public LongList(int capacity)
+	{
+		values = new long[Math.max(1, capacity)];
+	}
+
+	public void add(long value)
+	{
+		if (size == values.length)
+		{
+			values = Arrays.copyOf(values, size * 2);
+		}
+		values[size++] = value;
+	}
+
+	public void addAll(LongList other)
+	{
+		if (size + other.size > values.length)
+		{
+			values = Arrays.copyOf(values, Math.max(size + other.size, size * 2));
+		}
+		System.arraycopy(other.values, 0, values, size, other.size);
+		size += other.size;
+	}
+
+	public long get(int index)
+	{
+		return values[index];
+	}
+
+	public int size()
+	{
+		return size;
+	}
+
+	public long[] toArray()
+	{
+		return Arrays.copyOf(values, size);
+	}
+
+	// Packs two non-negative ints (e.g. entity indexes i, j) into one long
+	public static long pack(int i, int j)
+	{
+		return ((long) i << 32) | (j & 0xffffffffL);
+	}
+
+	public static int first(long pair)
+	{
+		return (int) (pair >>> 32);
+	}
+
+	public static int second(long pair)
+	{
+		return (int) pair;
+	}
+}
@@ -0,0 +1,437 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/* Compares the nodes of two NodeMaps block by block (nodes sharing a blocking key, see BlockIndex),
+ * sequentially or with the blocks spread over a ForkJoinPool.
+ * Blocks with more pairs than the tile size (e.g. the "s" and "t" blocks of BlockingByTitle) are split 
+ * into tiles of their pair space, which idle workers can steal, so one big block does not keep the others waiting.
+ * Matches are collected per block and concatenated in block order (within a block: in the order of 
+ * the sequential loop), so the result does not depend on the number of threads.
+ * In scoring mode (see score) the raw score of every compared pair is kept instead of the match decision.
+ * Important assumption: the matcher is thread-safe when a pool is used.
+ * */
+
+package uma.wdi.ir;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import uma.wdi.ir.blocking.BlockIndex;
+import uma.wdi.ir.matching.AbstractMatcher;
+
+public class MatchingEngine 
+{
+	// default maximum number of pairs (rows x columns) of a tile
+	public static final long DEFAULT_TILE_SIZE = 4096;
+	
+	// null: match in the calling thread
+	private ForkJoinPool pool;
+	private long tileSize = DEFAULT_TILE_SIZE;
+	
+	// blocks of the last run, for the statistics
+	private List<BlockStatistics> statistics = new ArrayList<>();
+	
+	public MatchingEngine()
+	{
+		this(null);
+	}
+	
+	public MatchingEngine(ForkJoinPool pool)
+	{
+		this.pool = pool;
+	}
+	
+	// Blocks with more pairs are split into tiles of at most tileSize pairs (parallel matching only)
+	public void setTileSize(long tileSize)
+	{
+		this.tileSize = Math.max(1, tileSize);
+	}
+	
+	/* Returns the matching pairs (LongList.pack(index1, index2) of the dense node indexes), 
+	 * comparing each node of index1 with the nodes of its block in index2 whose IDs it precedes.
+	 * */
+	public LongList match(BlockIndex index1, BlockIndex index2, AbstractMatcher ma)
+	{
+		return run(index1, index2, ma, null, 0);
+	}
+	
+	/* Scoring mode: compares the same pairs as match, but returns every pair with a score >= minScore,
+	 * whatever the threshold of the matcher. The scores are added to scores, in the order of the pairs.
+	 * */
+	public LongList score(BlockIndex index1, BlockIndex index2, AbstractMatcher ma, double minScore, DoubleList scores)
+	{
+		return run(index1, index2, ma, scores, minScore);
+	}
+	
+	private LongList run(BlockIndex index1, BlockIndex index2, AbstractMatcher ma, DoubleList scores, double minScore)
+	{
+		// the blocks both maps share
+		List<Block> shared = new ArrayList<>();
+		for (String key : index1.getKeys())
+		{
+			int[] block2 = index2.getBlock(key);
+			if (block2 != null)
+			{
+				shared.add(new Block(key, index1, index1.getBlock(key), index2, block2, ma, scores != null, minScore));
+			}
+		}
+		Block[] blocks = shared.toArray(new Block[shared.size()]);
+		
+		if (pool == null)
+		{
+			for (Block block : blocks)
+			{
+				block.runTile(0, block.block1.length, 0, block.block2.length);
+			}
+		}
+		else
+		{
+			pool.invoke(new BlockTask(blocks, 0, blocks.length, tileSize));
+		}
+		
+		LongList matches = new LongList();
+		statistics = new ArrayList<>();
+		for (Block block : blocks)
+		{
+			matches.addAll(block.finish());
+			if (scores != null) scores.addAll(block.scores);
+			statistics.add(block.statistics);
+		}
+		return matches;
+	}
+	
+	// Size and time of every block of the last run, in block order
+	public List<BlockStatistics> getBlockStatistics()
+	{
+		return statistics;
+	}
+	
+	// Print the top blocks by time of the last run into the console
+	public void printBlockStatistics(int top)
+	{
+		List<BlockStatistics> sorted = new ArrayList<>(statistics);
+		Collections.sort(sorted, new Comparator<BlockStatistics>() 
+		{
+			@Override
+			public int compare(BlockStatistics s1, BlockStatistics s2) 
+			{
+				return Long.compare(s2.nanos, s1.nanos);
+			}
+		});
+		
+		long nanos = 0;
+		long comparisons = 0;
+		for (BlockStatistics s : sorted)
+		{
+			nanos += s.nanos;
+			comparisons += s.comparisons;
+		}
+		System.out.println("Blocks = " + sorted.size() + ", comparisons = " + comparisons + ", matching time = " + nanos / 1000000 + " ms");
+		System.out.println("key\tsize1\tsize2\tcomparisons\tmatches\ttiles\ttime (ms)\tshare of time");
+		for (int i = 0; i < Math.min(top, sorted.size()); i++)
+		{
+			BlockStatistics s = sorted.get(i);
+			System.out.println(s.key + "\t" + s.size1 + "\t" + s.size2 + "\t" + s.comparisons + "\t" + s.matches + "\t" + s.tiles 
+					+ "\t" + s.getTime() + "\t" + (nanos == 0 ? 0 : 100 * s.nanos / nanos) + " %");
+		}
+	}
+	
+	/*
+	 * Size and time of one block
+	 */
+	public static class BlockStatistics
+	{
+		private String key;
+		private int size1;
+		private int size2;
+		private long comparisons;
+		private int matches;
+		private int tiles;
+		private long nanos;
+		
+		public String getKey()
+		{
+			return key;
+		}
+		
+		public int getSize1()
+		{
+			return size1;
+		}
+		
+		public int getSize2()
+		{
+			return size2;
+		}
+		
+		// number of compared pairs (the pairs where ID1 precedes ID2)
+		public long getComparisons()
+		{
+			return comparisons;
+		}
+		
+		// number of matches (scoring mode: number of pairs with a score >= minScore)
+		public int getMatches()
+		{
+			return matches;
+		}
+		
+		public int getTiles()
+		{
+			return tiles;
+		}
+		
+		// summed time of all tiles of the block, in ms
+		public double getTime()
+		{
+			return nanos / 1e6;
+		}
+	}
+	
+	/*
+	 * Comparisons of one block pair; tiles may run in parallel and collect their matches separately
+	 */
+	private static class Block
+	{
+		private BlockIndex index1;
+		private BlockIndex index2;
+		private int[] block1;
+		private int[] block2;
+		private AbstractMatcher ma;
+		private boolean scoring;
+		private double minScore;
+		
+		// matches as packed (row, column) positions in block1, block2, one tile each
+		private ConcurrentLinkedQueue<Tile> tiles = new ConcurrentLinkedQueue<>();
+		private AtomicLong comparisons = new AtomicLong();
+		private AtomicLong nanos = new AtomicLong();
+		private BlockStatistics statistics = new BlockStatistics();
+		// scoring mode: scores of the pairs returned by finish
+		private DoubleList scores;
+		
+		Block(String key, BlockIndex index1, int[] block1, BlockIndex index2, int[] block2, AbstractMatcher ma, boolean scoring, double minScore)
+		{
+			this.index1 = index1;
+			this.block1 = block1;
+			this.index2 = index2;
+			this.block2 = block2;
+			this.ma = ma;
+			this.scoring = scoring;
+			this.minScore = minScore;
+			statistics.key = key;
+			statistics.size1 = block1.length;
+			statistics.size2 = block2.length;
+		}
+		
+		// Compares rows [row0, row1) of block1 with columns [column0, column1) of block2
+		void runTile(int row0, int row1, int column0, int column1)
+		{
+			long start = System.nanoTime();
+			NodeMap m1 = index1.getMap();
+			NodeMap m2 = index2.getMap();
+			Tile tile = new Tile(row0, column0, scoring);
+			long count = 0;
+			// results of one row, the matcher scores a node against its part of the row in one batch
+			double[] rowScores = scoring ? new double[Math.max(0, column1 - column0)] : null;
+			boolean[] rowMatches = scoring ? null : new boolean[Math.max(0, column1 - column0)];
+			for (int r = row0; r < row1; r++)
+			{
+				int i = block1[r];
+				ANode n1 = m1.getNode(i);
+				// block2 is sorted by ID: the IDs id1 precedes are the tail of the block
+				int first = Math.max(column0, index2.firstNotBefore(block2, m1.getID(i)));
+				if (first >= column1) continue;
+				if (scoring)
+				{
+					ma.scoreAll(n1, m2, block2, first, column1, minScore, rowScores);
+					for (int k = first; k < column1; k++)
+					{
+						double score = rowScores[k - first];
+						if (score >= minScore)
+						{
+							tile.positions.add(LongList.pack(r, k));
+							tile.scores.add(score);
+						}
+					}
+				}
+				else
+				{
+					ma.matchAll(n1, m2, block2, first, column1, rowMatches);
+					for (int k = first; k < column1; k++)
+					{
+						if (rowMatches[k - first]) tile.positions.add(LongList.pack(r, k));
+					}
+				}
+				count += column1 - first;
+			}
+			tiles.add(tile);
+			comparisons.addAndGet(count);
+			nanos.addAndGet(System.nanoTime() - start);
+		}
+		
+		/* Returns the matches as packed node indexes, in the order of the sequential loop
+		 * (scoring mode: tile by tile, in the order of the tile origins) */
+		LongList finish()
+		{
+			LongList positions = new LongList();
+			long[] sorted;
+			if (scoring)
+			{
+				// the scores have to stay with their pairs, the tiles are put in order instead of the pairs
+				Tile[] ordered = tiles.toArray(new Tile[tiles.size()]);
+				Arrays.sort(ordered);
+				scores = new DoubleList();
+				for (Tile tile : ordered)
+				{
+					positions.addAll(tile.positions);
+					scores.addAll(tile.scores);
+				}
+				sorted = positions.toArray();
+			}
+			else
+			{
+				for (Tile tile : tiles)
+				{
+					positions.addAll(tile.positions);
+				}
+				sorted = positions.toArray();
+				if (tiles.size() > 1) Arrays.sort(sorted);
+			}
+			
+			LongList matches = new LongList(sorted.length);
+			for (long position : sorted)
+			{
+				matches.add(LongList.pack(block1[LongList.first(position)], block2[LongList.second(position)]));
+			}
+			
+			statistics.comparisons = comparisons.get();
+			statistics.matches = matches.size();
+			statistics.tiles = tiles.size();
+			statistics.nanos = nanos.get();
+			return matches;
+		}
+	}
+	
+	/*
+	 * Pairs found in one tile of a block, ordered by the tile origin
+	 */
+	private static class Tile implements Comparable<Tile>
+	{
+		private long origin;
+		private LongList positions = new LongList();
+		// scoring mode only
+		private DoubleList scores;
+		
+		Tile(int row0, int column0, boolean scoring)
+		{
+			origin = LongList.pack(row0, column0);
+			if (scoring) scores = new DoubleList();
+		}
+		
+		@Override
+		public int compareTo(Tile other)
+		{
+			return Long.compare(origin, other.origin);
+		}
+	}
+	
+	/*
+	 * Fork/join over a range of blocks: idle workers steal the other half of a range
+	 */
+	private static class BlockTask extends RecursiveAction
+	{
+		private static final long serialVersionUID = 1L;
+		
+		private Block[] blocks;
+		private int from;
+		private int to;
+		private long tileSize;
+		
+		BlockTask(Block[] blocks, int from, int to, long tileSize)
+		{
+			this.blocks = blocks;
+			this.from = from;
+			this.to = to;
+			this.tileSize = tileSize;
+		}
+		
+		@Override
+		protected void compute()
+		{
+			if (to - from == 1)
+			{
+				Block block = blocks[from];
+				new TileTask(block, 0, block.block1.length, 0, block.block2.length, tileSize).compute();
+			}
+			else if (to - from > 1)
+			{
+				int mid = (from + to) >>> 1;
+				invokeAll(new BlockTask(blocks, from, mid, tileSize), new BlockTask(blocks, mid, to, tileSize));
+			}
+		}
+	}
+	
+	/*
+	 * Fork/join over the pair space of one block: halves the longer side until a tile has at most tileSize pairs
+	 */
+	private static class TileTask extends RecursiveAction
+	{
+		private static final long serialVersionUID = 1L;
+		
+		private Block block;
+		private int row0, row1, column0, column1;
+		private long tileSize;
+		
+		TileTask(Block block, int row0, int row1, int column0, int column1, long tileSize)
+		{
+			this.block = block;
+			this.row0 = row0;
+			this.row1 = row1;
+			this.column0 = column0;
+			this.column1 = column1;
+			this.tileSize = tileSize;
+		}
+		
+		@Override
+		protected void compute()
+		{
+			int rows = row1 - row0;
+			int columns = column1 - column0;
+			if ((long) rows * columns <= tileSize || (rows == 1 && columns == 1))
+			{
+				block.runTile(row0, row1, column0, column1);
+			}
+			else if (rows >= columns)
+			{
+				int mid = (row0 + row1) >>> 1;
+				invokeAll(new TileTask(block, row0, mid, column0, column1, tileSize), 
+						new TileTask(block, mid, row1, column0, column1, tileSize));
+			}
+			else
+			{
+				int mid = (column0 + column1) >>> 1;
+				invokeAll(new TileTask(block, row0, row1, column0, mid, tileSize), 
+						new TileTask(block, row0, row1, mid, column1, tileSize));
+			}
+		}
+	}
+}
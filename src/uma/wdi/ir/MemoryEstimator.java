@@ -0,0 +1,114 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/* Estimates the heap used by ANodes, for the compact representation and for the former
+ * HashMap<String, HashSet<String>> representation holding the same attributes.
+ * Assumes a 64-bit JVM with compressed oops (12 byte object headers, 16 byte array headers,
+ * 8 byte alignment) and compact strings (Java 9+). */
+
+package uma.wdi.ir;
+
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+class MemoryEstimator
+{
+	private static final int HASHMAP = 48;
+	private static final int HASHMAP_NODE = 32;
+	private static final int HASHSET = 16;
+	private static final int ANODE = 24;
+	private static final int VALUESET = 16;
+	// ValueSet with type, date and number
+	private static final int TYPED_VALUESET = 32;
+
+	private MemoryEstimator()
+	{
+	}
+
+	// Bytes used by the nodes as stored now: shared strings (interned values) are counted once
+	static long compactBytes(Collection<ANode> nodes)
+	{
+		Map<String, Boolean> seen = new IdentityHashMap<>();
+		long bytes = 0;
+		for (ANode node : nodes)
+		{
+			bytes += ANODE + string(node.id, seen);
+			bytes += intArray(node.keys.length) + refArray(node.values.length);
+			for (ANode.ValueSet set : node.values)
+			{
+				bytes += (set instanceof ANode.TypedValueSet ? TYPED_VALUESET : VALUESET) + refArray(set.items.length);
+				for (String value : set.items)
+				{
+					bytes += string(value, seen);
+				}
+			}
+		}
+		return bytes;
+	}
+
+	// Bytes the same nodes used as HashMap<String, HashSet<String>> with a new String per value (names shared by the parser)
+	static long legacyBytes(Collection<ANode> nodes)
+	{
+		long bytes = 0;
+		for (ANode node : nodes)
+		{
+			bytes += ANODE + string(node.id, null);
+			bytes += HASHMAP + table(node.keys.length) + (long) HASHMAP_NODE * node.keys.length;
+			for (ANode.ValueSet set : node.values)
+			{
+				bytes += HASHSET + HASHMAP + table(set.items.length) + (long) HASHMAP_NODE * set.items.length;
+				for (String value : set.items)
+				{
+					bytes += string(value, null);
+				}
+			}
+		}
+		return bytes;
+	}
+
+	private static long string(String s, Map<String, Boolean> seen)
+	{
+		if (seen != null && seen.put(s, Boolean.TRUE) != null) return 0;
+		boolean latin1 = true;
+		for (int i = 0; i < s.length() && latin1; i++)
+		{
+			latin1 = s.charAt(i) < 256;
+		}
+		return 24 + align(16 + (latin1 ? s.length() : 2L * s.length()));
+	}
+
+	// bucket array of a HashMap with default capacity and load factor holding n entries
+	private static long table(int n)
+	{
+		int capacity = 16;
+		while (n > capacity * 0.75) capacity *= 2;
+		return refArray(capacity);
+	}
+
+	private static long intArray(int n)
+	{
+		return align(16 + 4L * n);
+	}
+
+	private static long refArray(int n)
+	{
+		return align(16 + 4L * n);
+	}
+
+	private static long align(long bytes)
+	{
+		return (bytes + 7) & ~7L;
+	}
+}
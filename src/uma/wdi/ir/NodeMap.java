@@ -19,13 +19,25 @@
 
 package uma.wdi.ir;
 
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.*;
 import java.util.Map.Entry;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import javax.xml.parsers.*;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 import javax.xml.xpath.*;
 
 import org.w3c.dom.*;
@@ -45,6 +57,13 @@ public class NodeMap
 	
 	// Stores XML (attribute-value extracted from XML) nodes by IDs ("id" tag)
     private Map<String, ANode> map = new HashMap<>();
+    
+    // id path of the last loaded file, stored in snapshots
+    private String idPath = "";
+    
+    // Dense entity indexes 0..size()-1 (in key set order), built on first use after loading
+    private volatile ANode[] nodes = null;
+    private volatile Map<String, Integer> indexes = null;
 		
 	// Get xml node by ID
 	public ANode getNode(String id) 
@@ -63,6 +82,68 @@ public class NodeMap
     {
         return map.keySet();
     }
+    
+    // Number of nodes in the map
+    public int size()
+    {
+        return map.size();
+    }
+    
+    // Get xml node by its dense index (0 <= index < size()), to iterate through the map without hashing IDs
+    public ANode getNode(int index)
+    {
+        return getNodes()[index];
+    }
+    
+    // Get the ID of the node with the given index
+    public String getID(int index)
+    {
+        return getNodes()[index].getID();
+    }
+    
+    // Get the dense index of a node by ID, -1 if the map does not contain the ID
+    public int getIndex(String id)
+    {
+        Map<String, Integer> idx = indexes;
+        if (idx == null)
+        {
+            ANode[] all = getNodes();
+            idx = new HashMap<>(all.length * 2);
+            for (int i = 0; i < all.length; i++)
+            {
+                idx.put(all[i].getID(), i);
+            }
+            indexes = idx;
+        }
+        Integer index = idx.get(id);
+        return index == null ? -1 : index;
+    }
+    
+    // All nodes by dense index
+    protected ANode[] getNodes()
+    {
+        ANode[] all = nodes;
+        if (all == null)
+        {
+            all = map.values().toArray(new ANode[map.size()]);
+            nodes = all;
+        }
+        return all;
+    }
+    
+    // Store a loaded node (replaces a node with the same ID)
+    protected void put(ANode node)
+    {
+        map.put(node.getID(), node);
+        nodes = null;
+        indexes = null;
+    }
+    
+    // Columnar copy of this map (see ColumnarNodeMap)
+    public ColumnarNodeMap toColumnar()
+    {
+        return new ColumnarNodeMap(this);
+    }
 	
 	/* Load data from .xml file
 	 * idPath (e.g. "/movies/movie/id") is used as an entity string ID
@@ -157,9 +238,10 @@ public class NodeMap
                     }
                     // #end B&T
                 }
-                map.put(id, attributes);
+                put(attributes);
                 // attributes.printAttributeNode();
 	        }
+	        this.idPath = idPath;
 	        return true;
 		}
 		catch (ParserConfigurationException e)
@@ -180,4 +262,348 @@ public class NodeMap
 		}         
 		return false;
 	}
+
+	/* Load data from .xml file with a streaming (StAX) parser, one record at a time.
+	 * Gives the same map as loadFromFile, but does not build a DOM of the whole file, 
+	 * so the memory used while loading scales with one record.
+	 * idPath must be a simple absolute path, e.g. "/movies/movie/id" or "/movies/movie/@id"
+	 */
+	public boolean loadFromFileStreaming(String file, String idPath)
+	{
+		if (!XMLNodeReader.isSupportedPath(idPath))
+		{
+			System.out.println("ERROR: id path " + idPath + " is not supported by the streaming loader, use loadFromFile");
+			return false;
+		}
+		
+		XMLStreamReader xml = null;
+		try (InputStream in = new FileInputStream(file))
+		{
+			xml = XMLNodeReader.createFactory().createXMLStreamReader(in);
+			XMLNodeReader reader = new XMLNodeReader(xml, idPath);
+			int count = 0;
+			ANode node;
+			while ((node = reader.next()) != null)
+			{
+				put(node);
+				count++;
+			}
+			if (count == 0)
+			{
+				System.out.println("ERROR: no ids (" + idPath +") found in the input file " + file);
+			}
+			this.idPath = idPath;
+			return true;
+		}
+		catch (FileNotFoundException e)
+		{
+			System.out.println("ERROR: input file " + file + " not found");
+		}
+		catch (XMLStreamException e) 
+		{
+			System.out.println("ERROR: your xml file " + file + " is not well-formed");
+		}
+		catch (IOException e) 
+		{
+			System.out.println("ERROR: input file " + file + " could not be read");
+		}
+		finally
+		{
+			closeQuietly(xml);
+		}
+		return false;
+	}
+	
+	/* Load data from .xml file on several cores: the file is split at record boundaries
+	 * (start tags of the element containing the id, e.g. <movie>) and the chunks are parsed in parallel 
+	 * with the streaming parser. The chunks are merged in file order, so the result is the same as
+	 * with loadFromFile (see XMLRecordChunker for the assumptions about the file).
+	 * idPath must be a simple absolute path, e.g. "/movies/movie/id" or "/movies/movie/@id"
+	 */
+	public boolean loadFromFileParallel(String file, String idPath, int threads)
+	{
+		if (!XMLNodeReader.isSupportedPath(idPath))
+		{
+			System.out.println("ERROR: id path " + idPath + " is not supported by the streaming loader, use loadFromFile");
+			return false;
+		}
+		String[] recordPath = XMLNodeReader.getRecordPath(idPath);
+		
+		// the prolog tells the encoding; a single record, a multi-byte encoding or a DOCTYPE (the chunks would lose 
+		// its entity declarations) cannot be split
+		String encoding = readEncoding(file);
+		if (encoding == null) return false;
+		if (recordPath.length < 2 || threads < 2 || !XMLRecordChunker.isSupportedEncoding(encoding) || hasDoctype(file))
+		{
+			return loadFromFileStreaming(file, idPath);
+		}
+
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try 
+		{
+			final XMLRecordChunker chunker = new XMLRecordChunker(new File(file), recordPath, encoding);
+			final String path = idPath;
+			// more chunks than threads, so that a slow chunk does not keep the others waiting
+			List<long[]> chunks = chunker.split(threads * 4);
+			if (chunks.isEmpty())
+			{
+				return loadFromFileStreaming(file, idPath);
+			}
+			
+			List<Future<List<ANode>>> futures = new ArrayList<>();
+			for (final long[] chunk : chunks)
+			{
+				futures.add(executor.submit(new Callable<List<ANode>>() 
+				{
+					@Override
+					public List<ANode> call() throws Exception 
+					{
+						return readChunk(chunker, chunk, path);
+					}
+				}));
+			}
+			
+			int count = 0;
+			for (Future<List<ANode>> future : futures)
+			{
+				for (ANode node : future.get())
+				{
+					put(node);
+					count++;
+				}
+			}
+			if (count == 0)
+			{
+				System.out.println("ERROR: no ids (" + idPath +") found in the input file " + file);
+			}
+			this.idPath = idPath;
+			return true;
+		}
+		catch (ExecutionException e)
+		{
+			if (e.getCause() instanceof XMLStreamException)
+			{
+				System.out.println("ERROR: your xml file " + file + " is not well-formed");
+			}
+			else
+			{
+				System.out.println("ERROR: input file " + file + " could not be read");
+			}
+		}
+		catch (IOException e) 
+		{
+			System.out.println("ERROR: input file " + file + " could not be read");
+		}
+		catch (InterruptedException e) 
+		{
+			Thread.currentThread().interrupt();
+		}
+		finally
+		{
+			executor.shutdownNow();
+		}
+		return false;
+	}
+	
+	// Load data from .xml file on all available cores
+	public boolean loadFromFileParallel(String file, String idPath)
+	{
+		return loadFromFileParallel(file, idPath, Runtime.getRuntime().availableProcessors());
+	}
+	
+	/* Print the estimated memory per node: compact ANodes (shared attribute dictionary, value arrays)
+	 * vs. the former representation with a HashMap of HashSets in every node
+	 */
+	public void printMemoryReport()
+	{
+		int n = size();
+		if (n == 0) return;
+		List<ANode> nodes = Arrays.asList(getNodes());
+		long before = MemoryEstimator.legacyBytes(nodes);
+		long after = MemoryEstimator.compactBytes(nodes);
+		System.out.println("Nodes = " + n);
+		System.out.println("Bytes per node before (HashMap/HashSet) = " + before / n);
+		System.out.println("Bytes per node after (dictionary-encoded) = " + after / n);
+		System.out.println("Saved = " + (100 * (before - after) / before) + " %");
+	}
+	
+	/* Save all nodes of the map into a binary snapshot file, 
+	 * which can be loaded much faster than the xml (see loadFromSnapshot)
+	 */
+	public boolean saveSnapshot(String file)
+	{
+		try 
+		{
+			NodeMapSnapshot.write(file, idPath, Arrays.asList(getNodes()));
+			return true;
+		} 
+		catch (IOException e) 
+		{
+			System.out.println("ERROR: could not write snapshot " + file);
+		}
+		return false;
+	}
+	
+	/* Load data from a snapshot file written by saveSnapshot (memory-mapped, no xml parsing).
+	 * The map is the same as the one the snapshot was saved from.
+	 * If called several times with different files, reads all in one map 
+	 */
+	public boolean loadFromSnapshot(String file)
+	{
+		if (!new File(file).exists())
+		{
+			System.out.println("ERROR: snapshot file " + file + " not found");
+			return false;
+		}
+		try 
+		{
+			NodeMapSnapshot snapshot = NodeMapSnapshot.read(file);
+			for (ANode node : snapshot.getNodes())
+			{
+				put(node);
+			}
+			idPath = snapshot.getIdPath();
+			return true;
+		} 
+		catch (IOException e) 
+		{
+			System.out.println("ERROR: " + e.getMessage());
+		}
+		return false;
+	}
+	
+	/* Load data from .xml file, using the snapshot file + ".nodemap" if it is up to date 
+	 * (written with the same idPath after the last change of the xml file).
+	 * Otherwise parses the xml file with loadFromFile and (re)writes the snapshot.
+	 */
+	public boolean loadFromFileCached(String file, String idPath)
+	{
+		File xml = new File(file);
+		File snapshotFile = new File(file + ".nodemap");
+		if (snapshotFile.exists() && snapshotFile.lastModified() >= xml.lastModified())
+		{
+			try 
+			{
+				NodeMapSnapshot snapshot = NodeMapSnapshot.read(snapshotFile.getPath());
+				if (snapshot.getIdPath().equals(idPath))
+				{
+					for (ANode node : snapshot.getNodes())
+					{
+						put(node);
+					}
+					this.idPath = idPath;
+					return true;
+				}
+			} 
+			catch (IOException e) 
+			{
+				// outdated or broken snapshot, parse the xml again
+			}
+		}
+		
+		NodeMap parsed = new NodeMap();
+		if (!parsed.loadFromFile(file, idPath)) return false;
+		parsed.saveSnapshot(snapshotFile.getPath());
+		for (ANode node : parsed.map.values())
+		{
+			put(node);
+		}
+		this.idPath = idPath;
+		return true;
+	}
+	
+	private static List<ANode> readChunk(XMLRecordChunker chunker, long[] chunk, String idPath) throws IOException, XMLStreamException
+	{
+		List<ANode> nodes = new ArrayList<>();
+		XMLStreamReader xml = null;
+		try (InputStream in = chunker.open(chunk))
+		{
+			xml = XMLNodeReader.createFactory().createXMLStreamReader(in, chunker.getEncoding());
+			XMLNodeReader reader = new XMLNodeReader(xml, idPath);
+			ANode node;
+			while ((node = reader.next()) != null)
+			{
+				nodes.add(node);
+			}
+		}
+		finally
+		{
+			closeQuietly(xml);
+		}
+		return nodes;
+	}
+	
+	// Returns the encoding of an xml file (UTF-8 if not declared), null if the file cannot be read
+	private static String readEncoding(String file)
+	{
+		XMLStreamReader xml = null;
+		try (InputStream in = new FileInputStream(file))
+		{
+			xml = XMLNodeReader.createFactory().createXMLStreamReader(in);
+			String encoding = xml.getEncoding();
+			if (encoding == null) encoding = xml.getCharacterEncodingScheme();
+			return encoding == null ? "UTF-8" : encoding;
+		}
+		catch (FileNotFoundException e)
+		{
+			System.out.println("ERROR: input file " + file + " not found");
+		}
+		catch (XMLStreamException e) 
+		{
+			System.out.println("ERROR: your xml file " + file + " is not well-formed");
+		}
+		catch (IOException e) 
+		{
+			System.out.println("ERROR: input file " + file + " could not be read");
+		}
+		finally
+		{
+			closeQuietly(xml);
+		}
+		return null;
+	}
+	
+	// Returns true if the prolog of an xml file declares a DOCTYPE (false if the file cannot be read, see readEncoding)
+	private static boolean hasDoctype(String file)
+	{
+		XMLStreamReader xml = null;
+		try (InputStream in = new FileInputStream(file))
+		{
+			xml = XMLNodeReader.createFactory().createXMLStreamReader(in);
+			while (xml.hasNext())
+			{
+				int event = xml.next();
+				if (event == XMLStreamConstants.DTD) return true;
+				if (event == XMLStreamConstants.START_ELEMENT) return false;
+			}
+		}
+		catch (XMLStreamException e) 
+		{
+			// reported by the loader
+		}
+		catch (IOException e) 
+		{
+			// reported by the loader
+		}
+		finally
+		{
+			closeQuietly(xml);
+		}
+		return false;
+	}
+	
+	private static void closeQuietly(XMLStreamReader xml)
+	{
+		if (xml != null)
+		{
+			try 
+			{
+				xml.close();
+			} 
+			catch (XMLStreamException e) 
+			{
+				// nothing to do, the stream is closed anyway
+			}
+		}
+	}
 }
@@ -0,0 +1,199 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/* Binary snapshot of the nodes of a NodeMap, written once after parsing the xml and
+ * read back through a memory-mapped file instead of parsing again. */
+/* Layout (big-endian):
+ *   magic, version, string count, strings (byte length + UTF-8 bytes, each distinct string stored once),
+ *   id path (string ref), attribute count, attribute names (string refs),
+ *   node count, nodes: id (string ref), attribute count, per attribute: attribute index, value count, values (string refs)
+ * */
+
+package uma.wdi.ir;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+public class NodeMapSnapshot
+{
+	private static final int MAGIC = 0x4E4D4150; // "NMAP"
+	private static final int VERSION = 1;
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private String idPath;
+	private List<ANode> nodes;
+
+	private NodeMapSnapshot(String idPath, List<ANode> nodes)
+	{
+		this.idPath = idPath;
+		this.nodes = nodes;
+	}
+
+	// id path the snapshotted map was loaded with
+	public String getIdPath()
+	{
+		return idPath;
+	}
+
+	// nodes in the order they were written
+	public List<ANode> getNodes()
+	{
+		return nodes;
+	}
+
+	// Writes the nodes (loaded with idPath) to file
+	public static void write(String file, String idPath, Collection<ANode> nodes) throws IOException
+	{
+		// dictionaries: every distinct string and every attribute name gets an index
+		Map<String, Integer> strings = new HashMap<>();
+		List<String> stringList = new ArrayList<>();
+		Map<String, Integer> attributes = new HashMap<>();
+		List<String> attributeList = new ArrayList<>();
+
+		ref(idPath, strings, stringList);
+		for (ANode node : nodes)
+		{
+			ref(node.getID(), strings, stringList);
+			for (String attribute : node.getAttributeNames())
+			{
+				ref(attribute, strings, stringList);
+				ref(attribute, attributes, attributeList);
+				for (String value : node.getAttribute(attribute))
+				{
+					ref(value, strings, stringList);
+				}
+			}
+		}
+
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16)))
+		{
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+
+			out.writeInt(stringList.size());
+			for (String s : stringList)
+			{
+				byte[] bytes = s.getBytes(UTF8);
+				out.writeInt(bytes.length);
+				out.write(bytes);
+			}
+			out.writeInt(strings.get(idPath));
+
+			out.writeInt(attributeList.size());
+			for (String attribute : attributeList)
+			{
+				out.writeInt(strings.get(attribute));
+			}
+
+			out.writeInt(nodes.size());
+			for (ANode node : nodes)
+			{
+				out.writeInt(strings.get(node.getID()));
+				Set<String> names = node.getAttributeNames();
+				out.writeInt(names.size());
+				for (String attribute : names)
+				{
+					Set<String> values = node.getAttribute(attribute);
+					out.writeInt(attributes.get(attribute));
+					out.writeInt(values.size());
+					for (String value : values)
+					{
+						out.writeInt(strings.get(value));
+					}
+				}
+			}
+		}
+	}
+
+	// Reads a snapshot written by write() through a memory-mapped file
+	public static NodeMapSnapshot read(String file) throws IOException
+	{
+		try (RandomAccessFile raf = new RandomAccessFile(file, "r"))
+		{
+			FileChannel channel = raf.getChannel();
+			if (channel.size() > Integer.MAX_VALUE)
+			{
+				throw new IOException("snapshot " + file + " is larger than 2 GB");
+			}
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+
+			if (buffer.remaining() < 8 || buffer.getInt() != MAGIC || buffer.getInt() != VERSION)
+			{
+				throw new IOException("file " + file + " is not a node map snapshot");
+			}
+
+			String[] strings = new String[buffer.getInt()];
+			byte[] bytes = new byte[256];
+			for (int i = 0; i < strings.length; i++)
+			{
+				int length = buffer.getInt();
+				if (length > bytes.length) bytes = new byte[Math.max(length, bytes.length * 2)];
+				buffer.get(bytes, 0, length);
+				strings[i] = new String(bytes, 0, length, UTF8);
+			}
+			String idPath = strings[buffer.getInt()];
+
+			String[] attributes = new String[buffer.getInt()];
+			for (int i = 0; i < attributes.length; i++)
+			{
+				attributes[i] = strings[buffer.getInt()];
+			}
+
+			int count = buffer.getInt();
+			List<ANode> nodes = new ArrayList<>(count);
+			for (int i = 0; i < count; i++)
+			{
+				ANode node = new ANode(strings[buffer.getInt()]);
+				int attributeCount = buffer.getInt();
+				for (int a = 0; a < attributeCount; a++)
+				{
+					String attribute = attributes[buffer.getInt()];
+					int valueCount = buffer.getInt();
+					for (int v = 0; v < valueCount; v++)
+					{
+						node.addAttribute(attribute, strings[buffer.getInt()]);
+					}
+				}
+				nodes.add(node);
+			}
+			return new NodeMapSnapshot(idPath, nodes);
+		}
+		catch (RuntimeException e)
+		{
+			// truncated or corrupted file (buffer underflow, index out of range)
+			throw new IOException("snapshot " + file + " is corrupted", e);
+		}
+	}
+
+	private static void ref(String s, Map<String, Integer> index, List<String> list)
+	{
+		if (!index.containsKey(s))
+		{
+			index.put(s, list.size());
+			list.add(s);
+		}
+	}
+}
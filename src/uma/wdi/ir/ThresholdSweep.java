@@ -0,0 +1,147 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/* P, R, F1 for a whole grid of matcher thresholds, computed from the raw scores of one matching run
+ * (see Evaluator.evaluateThresholds). A pair is a match at threshold t if its score >= t, as in AbstractMatcher.match.
+ * Same definitions as Evaluator: R = tp / |gold|, P = tp / (matches at least one ID of which is in the gold standard).
+ * */
+
+package uma.wdi.ir;
+
+import java.util.Arrays;
+
+public class ThresholdSweep 
+{
+	private double[] thresholds;
+	private double[] P;
+	private double[] R;
+	private double[] F1;
+	private int[] correct;
+	private int[] matched;
+	
+	/* thresholds: the grid
+	 * correctScores: scores of the scored pairs in the gold standard
+	 * otherScores: scores of the other scored pairs at least one ID of which is in the gold standard
+	 * goldSize: number of pairs in the gold standard */
+	public ThresholdSweep(double[] thresholds, double[] correctScores, double[] otherScores, int goldSize)
+	{
+		this.thresholds = thresholds.clone();
+		Arrays.sort(this.thresholds);
+		int n = this.thresholds.length;
+		P = new double[n];
+		R = new double[n];
+		F1 = new double[n];
+		correct = new int[n];
+		matched = new int[n];
+		
+		double[] tps = correctScores.clone();
+		double[] fps = otherScores.clone();
+		Arrays.sort(tps);
+		Arrays.sort(fps);
+		
+		// one pass over the sorted scores: position of the first score >= the current threshold
+		int t1 = 0;
+		int t2 = 0;
+		for (int k = 0; k < n; k++)
+		{
+			double t = this.thresholds[k];
+			while (t1 < tps.length && tps[t1] < t) t1++;
+			while (t2 < fps.length && fps[t2] < t) t2++;
+			
+			double tp = tps.length - t1;
+			int prs = (tps.length - t1) + (fps.length - t2);
+			R[k] = tp/goldSize;
+			if (prs == 0) P[k] = 0.0;
+			else P[k] = tp/prs;
+			if (R[k] + P[k] == 0) F1[k] = 0.0;
+			else F1[k] = 2*R[k]*P[k]/(R[k]+P[k]);
+			correct[k] = (int) tp;
+			matched[k] = prs;
+		}
+	}
+	
+	// Grid from, from + step, ..., up to to (inclusive)
+	public static double[] grid(double from, double to, double step)
+	{
+		int n = (int) Math.floor((to - from) / step + 1e-9) + 1;
+		double[] grid = new double[Math.max(0, n)];
+		for (int k = 0; k < grid.length; k++)
+		{
+			// no accumulated rounding errors, 0.1 * 7 instead of 0.1 + 0.1 + ...
+			grid[k] = from + k * step;
+		}
+		return grid;
+	}
+	
+	// Index of the threshold with the highest F1 (the lowest such threshold on ties), -1 for an empty grid
+	public int getBestIndex()
+	{
+		int best = -1;
+		for (int k = 0; k < thresholds.length; k++)
+		{
+			if (best < 0 || F1[k] > F1[best]) best = k;
+		}
+		return best;
+	}
+	
+	public double getBestThreshold()
+	{
+		int best = getBestIndex();
+		return best < 0 ? Double.NaN : thresholds[best];
+	}
+	
+	public double getBestF1()
+	{
+		int best = getBestIndex();
+		return best < 0 ? Double.NaN : F1[best];
+	}
+	
+	// Print the curve and the best threshold into console
+	public boolean printResults()
+	{
+		System.out.println("threshold\tP\tR\tF1\tcorrect\tmatched");
+		for (int k = 0; k < thresholds.length; k++)
+		{
+			System.out.println(thresholds[k] + "\t" + P[k] + "\t" + R[k] + "\t" + F1[k] + "\t" + correct[k] + "\t" + matched[k]);
+		}
+		int best = getBestIndex();
+		if (best >= 0) System.out.println("Best threshold = " + thresholds[best] + " (F1 = " + F1[best] + ")");
+		return true;
+	}
+	
+	// Getters, sorted by threshold
+	public double[] getThresholds() {
+		return thresholds;
+	}
+	
+	public double[] getP() {
+		return P;
+	}
+	
+	public double[] getR() {
+		return R;
+	}
+	
+	public double[] getF1() {
+		return F1;
+	}
+	
+	public int[] getCorrect() {
+		return correct;
+	}
+	
+	public int[] getMatched() {
+		return matched;
+	}
+}
@@ -0,0 +1,134 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package uma.wdi.ir;
+
+/**
+ * Parsing of typed attribute values into primitives (see AttributeType). 
+ * Dates are epoch days (days since 1970-01-01, proleptic Gregorian calendar), computed without Calendar or time zones.
+ *
+ */
+public final class TypedValues
+{
+	// epoch day of a missing or malformed date
+	public static final int NO_DATE = Integer.MIN_VALUE;
+	
+	private static final int[] DAYS_IN_MONTH = {31, 28, 31, 30, 31, 30, 31, 31, 30, 31, 30, 31};
+	
+	private TypedValues()
+	{
+	}
+	
+	/* Epoch day of a date "yyyy", "yyyy-mm" or "yyyy-mm-dd" (missing month or day: the first), 
+	 * optionally followed by a time ("T..." or " ..."), which is ignored. NO_DATE if the value is not such a date */
+	public static int parseDate(String value)
+	{
+		String s = value.trim();
+		int n = s.length();
+		int end = 0;
+		while (end < n && s.charAt(end) != 'T' && s.charAt(end) != ' ') end++;
+		
+		int[] fields = {0, 1, 1};
+		int field = 0;
+		int digits = 0;
+		for (int i = 0; i < end; i++)
+		{
+			char c = s.charAt(i);
+			if (c >= '0' && c <= '9')
+			{
+				if (++digits > (field == 0 ? 4 : 2)) return NO_DATE;
+				fields[field] = (digits == 1 ? 0 : 10 * fields[field]) + (c - '0');
+			}
+			else if (c == '-' && digits > 0 && field < 2)
+			{
+				field++;
+				digits = 0;
+			}
+			else return NO_DATE;
+		}
+		if (digits == 0 || (field == 0 && digits != 4)) return NO_DATE;
+		
+		int year = fields[0];
+		int month = fields[1];
+		int day = fields[2];
+		if (month < 1 || month > 12 || day < 1 || day > daysInMonth(year, month)) return NO_DATE;
+		return toEpochDay(year, month, day);
+	}
+	
+	// Epoch day of the first value that is a date, NO_DATE if there is none
+	public static int firstDate(Iterable<String> values)
+	{
+		for (String value : values)
+		{
+			int day = parseDate(value);
+			if (day != NO_DATE) return day;
+		}
+		return NO_DATE;
+	}
+	
+	// Decimal number, NaN if the value is not a number
+	public static double parseNumber(String value)
+	{
+		try
+		{
+			return Double.parseDouble(value.trim());
+		}
+		catch (NumberFormatException e)
+		{
+			return Double.NaN;
+		}
+	}
+	
+	// First value that is a number, NaN if there is none
+	public static double firstNumber(Iterable<String> values)
+	{
+		for (String value : values)
+		{
+			double number = parseNumber(value);
+			if (!Double.isNaN(number)) return number;
+		}
+		return Double.NaN;
+	}
+	
+	// Days since 1970-01-01 (month 1..12, day 1..31)
+	public static int toEpochDay(int year, int month, int day)
+	{
+		// years start in March, so that the leap day is the last day of the year
+		int y = month <= 2 ? year - 1 : year;
+		int era = (y >= 0 ? y : y - 399) / 400;
+		int yearOfEra = y - era * 400;
+		int dayOfYear = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+		int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+		return era * 146097 + dayOfEra - 719468;
+	}
+	
+	// Year of an epoch day
+	public static int getYear(int epochDay)
+	{
+		int z = epochDay + 719468;
+		int era = (z >= 0 ? z : z - 146096) / 146097;
+		int dayOfEra = z - era * 146097;
+		int yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+		int dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+		// March-based month 0..11, January and February belong to the next year
+		int month = (5 * dayOfYear + 2) / 153;
+		return yearOfEra + era * 400 + (month >= 10 ? 1 : 0);
+	}
+	
+	private static int daysInMonth(int year, int month)
+	{
+		if (month == 2 && (year % 4 == 0 && (year % 100 != 0 || year % 400 == 0))) return 29;
+		return DAYS_IN_MONTH[month - 1];
+	}
+}
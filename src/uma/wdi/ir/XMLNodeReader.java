@@ -0,0 +1,285 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/* Reads XML records one by one with a streaming (StAX) parser and turns them into ANodes,
+ * without building a DOM of the whole file. */
+/* Only simple absolute id paths are supported: "/data/videogame/id" (id element) or
+ * "/data/videogame/@id" (id attribute). The parent of the id is the record element.
+ * */
+
+package uma.wdi.ir;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+public class XMLNodeReader
+{
+	/*
+	 * Produces the same ANodes as the DOM loader of NodeMap (same single-valued and
+	 * multi-valued child handling), but keeps only the current record in memory.
+	 */
+
+	private static final Pattern SIMPLE_PATH = Pattern.compile("(/[^/@\\[\\]()*]+)+(/@?[^/@\\[\\]()*]+)");
+
+	private XMLStreamReader reader;
+
+	// element names from the document root to the record element
+	private String[] recordPath;
+	// name of the id element or attribute (without "@")
+	private String idName;
+	private boolean idIsAttribute;
+
+	// depth of the current element, number of recordPath steps matched on the current branch
+	private int depth = 0;
+	private int matched = 0;
+
+	// ANodes of the last read record (one per id found in the record)
+	private Deque<ANode> pending = new ArrayDeque<>();
+
+	public XMLNodeReader(XMLStreamReader reader, String idPath)
+	{
+		if (!isSupportedPath(idPath))
+		{
+			throw new IllegalArgumentException("unsupported id path " + idPath);
+		}
+		this.reader = reader;
+
+		recordPath = getRecordPath(idPath);
+		String last = idPath.substring(idPath.lastIndexOf('/') + 1);
+		idIsAttribute = last.startsWith("@");
+		idName = idIsAttribute ? last.substring(1) : last;
+	}
+
+	// Element names from the document root to the record element, e.g. {"data", "videogame"} for "/data/videogame/id"
+	public static String[] getRecordPath(String idPath)
+	{
+		String[] steps = idPath.substring(1).split("/");
+		String[] path = new String[steps.length - 1];
+		System.arraycopy(steps, 0, path, 0, path.length);
+		return path;
+	}
+
+	// Returns true if idPath can be evaluated while streaming (absolute path without axes, wildcards or predicates)
+	public static boolean isSupportedPath(String idPath)
+	{
+		return idPath != null && SIMPLE_PATH.matcher(idPath).matches();
+	}
+
+	// Creates a StAX factory configured like the DOM parser used by NodeMap (not namespace aware, entities replaced)
+	public static XMLInputFactory createFactory()
+	{
+		XMLInputFactory factory = XMLInputFactory.newInstance();
+		factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, Boolean.FALSE);
+		factory.setProperty(XMLInputFactory.IS_REPLACING_ENTITY_REFERENCES, Boolean.TRUE);
+		factory.setProperty(XMLInputFactory.IS_COALESCING, Boolean.FALSE);
+		return factory;
+	}
+
+	// Returns the next ANode of the stream, null at the end of the document
+	public ANode next() throws XMLStreamException
+	{
+		while (pending.isEmpty())
+		{
+			if (!reader.hasNext()) return null;
+
+			int event = reader.next();
+			if (event == XMLStreamConstants.START_ELEMENT)
+			{
+				if (matched == depth && depth < recordPath.length && recordPath[depth].equals(elementName()))
+				{
+					matched++;
+				}
+				if (matched == recordPath.length)
+				{
+					// the whole record is consumed, depth and matched stay unchanged
+					readRecord();
+					matched--;
+				}
+				else
+				{
+					depth++;
+				}
+			}
+			else if (event == XMLStreamConstants.END_ELEMENT)
+			{
+				depth--;
+				if (matched > depth) matched = depth;
+			}
+			else if (event == XMLStreamConstants.END_DOCUMENT)
+			{
+				return null;
+			}
+		}
+		return pending.poll();
+	}
+
+	// Reads a record element (the reader is at its START_ELEMENT) up to its END_ELEMENT
+	private void readRecord() throws XMLStreamException
+	{
+		List<String> ids = new ArrayList<>();
+		List<String> names = new ArrayList<>();
+		List<String> values = new ArrayList<>();
+
+		if (idIsAttribute)
+		{
+			String id = reader.getAttributeValue(null, idName);
+			if (id != null) ids.add(id);
+		}
+
+		while (true)
+		{
+			int event = reader.next();
+			if (event == XMLStreamConstants.END_ELEMENT)
+			{
+				break;
+			}
+			if (event == XMLStreamConstants.START_ELEMENT)
+			{
+				String attribute = elementName();
+				List<StringBuilder> segments = new ArrayList<>();
+				List<Boolean> textual = new ArrayList<>();
+				readChild(segments, textual);
+
+				if (!idIsAttribute && attribute.equals(idName))
+				{
+					ids.add(textContent(segments, textual));
+				}
+
+				// Single-valued node
+				if (segments.size() == 1)
+				{
+					addValue(names, values, attribute, textContent(segments, textual));
+				}
+				// Multi-valued node
+				else
+				{
+					for (StringBuilder segment : segments)
+					{
+						addValue(names, values, attribute, segment.toString());
+					}
+				}
+			}
+		}
+
+		for (String id : ids)
+		{
+			ANode node = new ANode(id);
+			for (int i = 0; i < names.size(); i++)
+			{
+				node.addAttribute(names.get(i), values.get(i));
+			}
+			pending.add(node);
+		}
+	}
+
+	/* Reads a child element of a record (the reader is at its START_ELEMENT) up to its END_ELEMENT.
+	 * Collects the text content of each of its child nodes (as the DOM does: adjacent text is one node,
+	 * text of nested elements belongs to the nested element, comments keep their own text) */
+	private void readChild(List<StringBuilder> segments, List<Boolean> textual) throws XMLStreamException
+	{
+		int level = 0;
+		boolean lastWasText = false;
+		while (true)
+		{
+			int event = reader.next();
+			switch (event)
+			{
+				case XMLStreamConstants.START_ELEMENT:
+					if (level == 0)
+					{
+						segments.add(new StringBuilder());
+						textual.add(Boolean.TRUE);
+					}
+					level++;
+					lastWasText = false;
+					break;
+				case XMLStreamConstants.END_ELEMENT:
+					if (level == 0) return;
+					level--;
+					lastWasText = false;
+					break;
+				case XMLStreamConstants.CHARACTERS:
+				case XMLStreamConstants.SPACE:
+				case XMLStreamConstants.ENTITY_REFERENCE:
+					if (level == 0 && !lastWasText)
+					{
+						segments.add(new StringBuilder());
+						textual.add(Boolean.TRUE);
+					}
+					segments.get(segments.size() - 1).append(reader.getText());
+					lastWasText = level == 0;
+					break;
+				case XMLStreamConstants.CDATA:
+					if (level == 0)
+					{
+						segments.add(new StringBuilder());
+						textual.add(Boolean.TRUE);
+					}
+					segments.get(segments.size() - 1).append(reader.getText());
+					lastWasText = false;
+					break;
+				case XMLStreamConstants.COMMENT:
+				case XMLStreamConstants.PROCESSING_INSTRUCTION:
+					// the text content of an element does not include comments, the comment node itself has one
+					if (level == 0)
+					{
+						String text = event == XMLStreamConstants.COMMENT ? reader.getText() : reader.getPIData();
+						segments.add(new StringBuilder(text == null ? "" : text));
+						textual.add(Boolean.FALSE);
+					}
+					lastWasText = false;
+					break;
+				default:
+					break;
+			}
+		}
+	}
+
+	// Text content of an element with the given child segments
+	private String textContent(List<StringBuilder> segments, List<Boolean> textual)
+	{
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < segments.size(); i++)
+		{
+			if (textual.get(i)) sb.append(segments.get(i));
+		}
+		return sb.toString();
+	}
+
+	private void addValue(List<String> names, List<String> values, String attribute, String value)
+	{
+		value = value.trim();
+		if (!value.isEmpty())
+		{
+			names.add(attribute);
+			values.add(value);
+		}
+	}
+
+	// Qualified element name, as getNodeName() of a non namespace aware DOM
+	private String elementName()
+	{
+		String prefix = reader.getPrefix();
+		if (prefix == null || prefix.isEmpty()) return reader.getLocalName();
+		return prefix + ":" + reader.getLocalName();
+	}
+}
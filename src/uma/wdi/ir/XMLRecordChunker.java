@@ -0,0 +1,229 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/* Splits one XML file into chunks at record boundaries, so that the chunks can be parsed independently.
+ * Each chunk is a byte range of the file starting at a record start tag (e.g. "<videogame"), wrapped
+ * into the start and end tags of the record's ancestors, so it is a well-formed document on its own. */
+/* Important assumptions: ASCII-compatible encoding (e.g. UTF-8), no DOCTYPE (each chunk gets a new prolog,
+ * so entities declared in the file would be undefined), the record element is not nested
+ * in itself and its start tag does not occur in comments or CDATA sections.
+ * NodeMap.loadFromFileParallel checks the encoding and the DOCTYPE and loads other files with one thread.
+ * */
+
+package uma.wdi.ir;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.io.SequenceInputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+public class XMLRecordChunker
+{
+	// chunks smaller than this are not worth a separate task
+	private static final long MIN_CHUNK_SIZE = 1 << 20;
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	private File file;
+	private String encoding;
+	private byte[] recordStart;
+	private byte[] parentEnd;
+	private byte[] header;
+	private byte[] footer;
+
+	/* recordPath: element names from the document root to the record element, e.g. {"data", "videogame"}
+	 * encoding: encoding of the file, as declared in its prolog */
+	public XMLRecordChunker(File file, String[] recordPath, String encoding)
+	{
+		this.file = file;
+		this.encoding = encoding;
+		Charset cs = Charset.forName(encoding);
+
+		recordStart = ("<" + recordPath[recordPath.length - 1]).getBytes(cs);
+		parentEnd = ("</" + recordPath[recordPath.length - 2]).getBytes(cs);
+
+		StringBuilder open = new StringBuilder("<?xml version=\"1.0\" encoding=\"" + encoding + "\"?>");
+		StringBuilder close = new StringBuilder();
+		for (int i = 0; i < recordPath.length - 1; i++)
+		{
+			open.append('<').append(recordPath[i]).append('>');
+			close.insert(0, "</" + recordPath[i] + ">");
+		}
+		header = open.toString().getBytes(cs);
+		footer = close.toString().getBytes(cs);
+	}
+
+	// Returns true if chunks of a file in this encoding can be found by searching for ASCII tags
+	public static boolean isSupportedEncoding(String encoding)
+	{
+		try
+		{
+			byte[] probe = "<a/>".getBytes(Charset.forName(encoding));
+			return probe.length == 4 && probe[0] == '<';
+		}
+		catch (IllegalArgumentException e)
+		{
+			return false;
+		}
+	}
+
+	/* Returns the chunks as {start, end} byte offsets, at most maxChunks of them, in file order.
+	 * Returns an empty list if no record boundaries are found. */
+	public List<long[]> split(int maxChunks) throws IOException
+	{
+		List<long[]> chunks = new ArrayList<>();
+		try (RandomAccessFile raf = new RandomAccessFile(file, "r"))
+		{
+			FileChannel channel = raf.getChannel();
+			long first = findRecordStart(channel, 0, channel.size());
+			long end = findLast(channel, parentEnd);
+			if (first < 0 || end < first) return chunks;
+
+			int n = (int) Math.max(1, Math.min(maxChunks, (end - first) / MIN_CHUNK_SIZE));
+			long start = first;
+			for (int i = 1; i < n && start < end; i++)
+			{
+				long target = first + (end - first) * i / n;
+				long next = findRecordStart(channel, Math.max(target, start + 1), end);
+				if (next < 0) break;
+				chunks.add(new long[]{start, next});
+				start = next;
+			}
+			chunks.add(new long[]{start, end});
+		}
+		return chunks;
+	}
+
+	// Opens a chunk as a stand-alone XML document
+	public InputStream open(long[] chunk) throws IOException
+	{
+		List<InputStream> parts = new ArrayList<>();
+		parts.add(new ByteArrayInputStream(header));
+		parts.add(new RangeInputStream(file, chunk[0], chunk[1]));
+		parts.add(new ByteArrayInputStream(footer));
+		return new SequenceInputStream(Collections.enumeration(parts));
+	}
+
+	public String getEncoding()
+	{
+		return encoding;
+	}
+
+	// Finds the next record start tag ("<videogame" followed by whitespace, ">" or "/") in [from, limit)
+	private long findRecordStart(FileChannel channel, long from, long limit) throws IOException
+	{
+		ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+		long pos = from;
+		while (pos < limit)
+		{
+			buffer.clear();
+			int read = channel.read(buffer, pos);
+			if (read <= 0) return -1;
+			byte[] bytes = buffer.array();
+			// the tag and the following byte have to be in the buffer
+			int last = read - recordStart.length - 1;
+			for (int i = 0; i <= last && pos + i < limit; i++)
+			{
+				if (matchesAt(bytes, i, recordStart))
+				{
+					byte b = bytes[i + recordStart.length];
+					if (b == '>' || b == '/' || b == ' ' || b == '\t' || b == '\n' || b == '\r')
+					{
+						return pos + i;
+					}
+				}
+			}
+			if (read < BUFFER_SIZE) return -1;
+			pos += last + 1;
+		}
+		return -1;
+	}
+
+	// Finds the last occurrence of the pattern in the file
+	private long findLast(FileChannel channel, byte[] pattern) throws IOException
+	{
+		ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+		long end = channel.size();
+		while (end > 0)
+		{
+			long start = Math.max(0, end - BUFFER_SIZE);
+			buffer.clear();
+			buffer.limit((int) (end - start));
+			int read = channel.read(buffer, start);
+			byte[] bytes = buffer.array();
+			for (int i = read - pattern.length; i >= 0; i--)
+			{
+				if (matchesAt(bytes, i, pattern)) return start + i;
+			}
+			if (start == 0) return -1;
+			// overlap, so that a pattern across the buffer border is found
+			end = start + pattern.length - 1;
+		}
+		return -1;
+	}
+
+	private static boolean matchesAt(byte[] bytes, int offset, byte[] pattern)
+	{
+		for (int j = 0; j < pattern.length; j++)
+		{
+			if (bytes[offset + j] != pattern[j]) return false;
+		}
+		return true;
+	}
+
+	/* Reads the byte range [start, end) of a file */
+	private static class RangeInputStream extends InputStream
+	{
+		private RandomAccessFile raf;
+		private long remaining;
+
+		RangeInputStream(File file, long start, long end) throws IOException
+		{
+			raf = new RandomAccessFile(file, "r");
+			raf.seek(start);
+			remaining = end - start;
+		}
+
+		@Override
+		public int read() throws IOException
+		{
+			if (remaining <= 0) return -1;
+			int b = raf.read();
+			if (b >= 0) remaining--;
+			return b;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException
+		{
+			if (remaining <= 0) return -1;
+			int n = raf.read(b, off, (int) Math.min(len, remaining));
+			if (n > 0) remaining -= n;
+			return n;
+		}
+
+		@Override
+		public void close() throws IOException
+		{
+			raf.close();
+		}
+	}
+}
@@ -0,0 +1,150 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package uma.wdi.ir.blocking;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import uma.wdi.ir.NodeMap;
+
+/**
+ * Inverted index from blocking keys to the nodes of a NodeMap.
+ * The blocking key of every node is computed once; nodes with a null key are left out.
+ * Within a block the nodes are sorted by ID, so that the nodes preceding or following
+ * a given ID are a contiguous range (see firstNotBefore).
+ *
+ */
+public class BlockIndex
+{
+	private NodeMap map;
+	// blocking key -> dense indexes of the nodes in the block, sorted by ID
+	private Map<String, int[]> blocks = new LinkedHashMap<>();
+
+	public BlockIndex(NodeMap map, BlockingOperator bo)
+	{
+		this.map = map;
+
+		Map<String, List<Integer>> members = new LinkedHashMap<>();
+		for (int i = 0; i < map.size(); i++)
+		{
+			String key = bo.getBlockingKey(map.getNode(i));
+			if (key == null) continue;
+
+			List<Integer> block = members.get(key);
+			if (block == null)
+			{
+				block = new ArrayList<>();
+				members.put(key, block);
+			}
+			block.add(i);
+		}
+
+		final NodeMap m = map;
+		Comparator<Integer> byID = new Comparator<Integer>()
+		{
+			@Override
+			public int compare(Integer i1, Integer i2)
+			{
+				return m.getID(i1).compareTo(m.getID(i2));
+			}
+		};
+		for (Map.Entry<String, List<Integer>> entry : members.entrySet())
+		{
+			List<Integer> block = entry.getValue();
+			Collections.sort(block, byID);
+			int[] indexes = new int[block.size()];
+			for (int k = 0; k < indexes.length; k++)
+			{
+				indexes[k] = block.get(k);
+			}
+			blocks.put(entry.getKey(), indexes);
+		}
+	}
+
+	/**
+	 * Get the nodes of a block
+	 * @param key the blocking key
+	 * @return dense indexes of the nodes, sorted by ID, or null if no node has the key
+	 */
+	public int[] getBlock(String key)
+	{
+		return blocks.get(key);
+	}
+
+	/**
+	 * Get all blocking keys
+	 * @return the keys, in the order the blocks were first seen
+	 */
+	public Set<String> getKeys()
+	{
+		return Collections.unmodifiableSet(blocks.keySet());
+	}
+
+	public NodeMap getMap()
+	{
+		return map;
+	}
+
+	/**
+	 * Position of the first node in the block whose ID does not precede id (ID >= id)
+	 * @param block a block of this index
+	 * @param id the ID to compare with
+	 * @return position in block, block.length if all IDs precede id
+	 */
+	public int firstNotBefore(int[] block, String id)
+	{
+		int lo = 0;
+		int hi = block.length;
+		while (lo < hi)
+		{
+			int mid = (lo + hi) >>> 1;
+			if (map.getID(block[mid]).compareTo(id) < 0) lo = mid + 1;
+			else hi = mid;
+		}
+		return lo;
+	}
+
+	/**
+	 * Number of candidate pairs between the blocks of two indexes (pairs sharing a blocking key)
+	 * @param other the index of the second map
+	 * @return the number of pairs
+	 */
+	public long countCandidatePairs(BlockIndex other)
+	{
+		long pairs = 0;
+		for (Map.Entry<String, int[]> entry : blocks.entrySet())
+		{
+			int[] block = other.getBlock(entry.getKey());
+			if (block != null) pairs += (long) entry.getValue().length * block.length;
+		}
+		return pairs;
+	}
+
+	@Override
+	public String toString()
+	{
+		int largest = 0;
+		for (int[] block : blocks.values())
+		{
+			largest = Math.max(largest, block.length);
+		}
+		return blocks.size() + " blocks, largest: " + largest + " nodes";
+	}
+}
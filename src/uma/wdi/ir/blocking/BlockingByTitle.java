@@ -14,8 +14,8 @@
 
 package uma.wdi.ir.blocking;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import uma.wdi.ir.ANode;
 
@@ -29,7 +29,9 @@ public class BlockingByTitle implements BlockingOperator
 
 	// TODO: "date" should come from here - private XPathExpression blockingKeyXPath;
 	
-	private Map<String, String> cache = new HashMap<>();
+	// thread-safe; nodes without key are cached as NO_KEY (the map does not allow null values)
+	private static final String NO_KEY = new String();
+	private ConcurrentMap<String, String> cache = new ConcurrentHashMap<>();
 	
 	public BlockingByTitle() {
 	}
@@ -37,8 +39,9 @@ public class BlockingByTitle implements BlockingOperator
 	@Override
 	public String getBlockingKey(ANode node) 
 	{
-		if(cache.containsKey(node.getID()))
-			return cache.get(node.getID());
+		String cached = cache.get(node.getID());
+		if(cached != null)
+			return cached == NO_KEY ? null : cached;
 		
 		String blk = null;
 		for(String title : node.getAttribute("title")) 
@@ -50,7 +53,7 @@ public class BlockingByTitle implements BlockingOperator
 		}
 		if (blk == null) System.out.println("ERROR: null blocking key created for node " + node);
 		
-		cache.put(node.getID(), blk);
+		cache.put(node.getID(), blk == null ? NO_KEY : blk);
 		
 		return blk;
 	}
@@ -14,21 +14,12 @@
 
 package uma.wdi.ir.blocking;
 
-import java.text.DateFormat;
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
-import java.util.Calendar;
-import java.util.HashMap;
-import java.util.Map;
-
-import javax.xml.xpath.XPathExpression;
-import javax.xml.xpath.XPathExpressionException;
-import javax.xml.xpath.XPathFactory;
-
 import uma.wdi.ir.ANode;
+import uma.wdi.ir.TypedValues;
 
 /**
  * Blocking key: movies by year
+ * (decade of the first "release" date, parsed once when loading if "release" is a DATE, see AttributeDictionary.setType)
  *  @author Volha
  *  @author Heiko
  *
@@ -38,42 +29,22 @@ public class BlockingByYear implements BlockingOperator
 
 	// TODO: "date" should come from here - private XPathExpression blockingKeyXPath;
 	
-	private Map<String, String> cache = new HashMap<>();
-	
 	public BlockingByYear() {
 	}
 	
 	@Override
 	public String getBlockingKey(ANode node) 
 	{
-		if(cache.containsKey(node.getID()))
-			return cache.get(node.getID());
-		
-		String blk = null;
-		try 
-		{
-		    for(String date : node.getAttribute("release")) 
-            {
-	        	if (date != null && !date.isEmpty())
-				{
-					DateFormat formatter = new SimpleDateFormat("yyyy-mm-dd");
-					Calendar c = Calendar.getInstance();
-					c.setTime(formatter.parse(date));
-		            int year = c.get(Calendar.YEAR);
-		            year = year - year%10;
-		            blk = String.valueOf(year);
-				}
-            }
-		} 
-		catch (ParseException e) 
+		int date = node.getDate("release");
+		if (date == TypedValues.NO_DATE) 
 		{
-			blk = null;
+			System.out.println("ERROR: null blocking key created for node " + node);
+			return null;
 		}
-		if (blk == null) System.out.println("ERROR: null blocking key created for node " + node);
-		
-		cache.put(node.getID(), blk);
 		
-		return blk;
+		int year = TypedValues.getYear(date);
+		year = year - year%10;
+		return String.valueOf(year);
 	}
 
 }
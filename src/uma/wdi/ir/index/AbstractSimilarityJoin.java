@@ -0,0 +1,118 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package uma.wdi.ir.index;
+
+import java.util.Arrays;
+
+import uma.wdi.ir.ANode;
+import uma.wdi.ir.LongHashSet;
+import uma.wdi.ir.LongList;
+import uma.wdi.ir.NodeMap;
+import uma.wdi.ir.matching.SimpleMatcher;
+import uma.wdi.ir.similarity.SimilarityFunction;
+
+public abstract class AbstractSimilarityJoin 
+{
+	/*
+	 * A join finds the node pairs of two maps that SimpleMatcher(attribute, function, threshold) would match, 
+	 * using an index instead of comparing all pairs (see Evaluator.calculateScores). 
+	 * Not thread-safe, a join keeps the statistics of its last run.
+	 */
+	
+	protected String attribute;
+	protected double threshold;
+	
+	// statistics of the last join, in value pairs
+	protected long pairs = 0;
+	protected long verified = 0;
+	protected long similar = 0;
+	
+	protected AbstractSimilarityJoin(String attribute, double threshold)
+	{
+		this.attribute = attribute;
+		this.threshold = threshold;
+	}
+	
+	/**
+	 * Find the similar node pairs
+	 * @param m1 the first map
+	 * @param m2 the second map (may be m1)
+	 * @return LongList.pack(index1, index2) of the dense indexes, sorted, only pairs where the ID of node1 
+	 * precedes (or equals) the ID of node2, as in Evaluator.calculateScores
+	 */
+	public abstract LongList join(NodeMap m1, NodeMap m2);
+	
+	// Print the statistics of the last join into console
+	public abstract void printStatistics();
+	
+	// Getters
+	public String getAttribute() {
+		return attribute;
+	}
+	
+	public double getThreshold() {
+		return threshold;
+	}
+	
+	public long getPairs() {
+		return pairs;
+	}
+	
+	public long getVerified() {
+		return verified;
+	}
+	
+	public long getSimilar() {
+		return similar;
+	}
+	
+	// Adds the pair if the ID of node1 precedes (or equals) the ID of node2
+	protected static void addPair(LongHashSet result, NodeMap m1, int i1, NodeMap m2, int i2)
+	{
+		if (m1.getID(i1).compareTo(m2.getID(i2)) <= 0) result.add(LongList.pack(i1, i2));
+	}
+	
+	// Compares all pairs, for thresholds where the index cannot rule out any pair
+	protected LongList joinAllPairs(NodeMap m1, NodeMap m2, SimilarityFunction function)
+	{
+		SimpleMatcher matcher = new SimpleMatcher(attribute, function, threshold);
+		LongHashSet result = new LongHashSet();
+		for (int i1 = 0; i1 < m1.size(); i1++)
+		{
+			ANode n1 = m1.getNode(i1);
+			for (int i2 = 0; i2 < m2.size(); i2++)
+			{
+				if (m1.getID(i1).compareTo(m2.getID(i2)) > 0) continue;
+				int size = n1.getAttribute(attribute).size() * m2.getNode(i2).getAttribute(attribute).size();
+				pairs += size;
+				verified += size;
+				if (matcher.match(n1, m2.getNode(i2))) result.add(LongList.pack(i1, i2));
+			}
+		}
+		return sorted(result);
+	}
+	
+	protected static LongList sorted(LongHashSet set)
+	{
+		long[] values = set.toArray();
+		Arrays.sort(values);
+		LongList list = new LongList(values.length);
+		for (long value : values)
+		{
+			list.add(value);
+		}
+		return list;
+	}
+}
@@ -0,0 +1,229 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/* BK-tree (Burkhard-Keller) over the values of one attribute of a NodeMap, for Levenshtein range queries.
+ * Every tree node is a distinct (lowercased) value; a child hangs below its parent at the edge labelled 
+ * with their edit distance. By the triangle inequality, the values within distance k of a query q lie 
+ * only below edges in [d - k, d + k], where d is the distance of q to the parent, so a query computes 
+ * the distance to a fraction of the values. Values can be added at any time (incremental matching).
+ * Not thread-safe.
+ * */
+
+package uma.wdi.ir.index;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import uma.wdi.ir.IntList;
+import uma.wdi.ir.NodeMap;
+import uma.wdi.ir.similarity.BitParallelEditDistance;
+
+public class BKTree implements EditDistanceIndex 
+{
+	private NodeMap map;
+	private String attribute;
+	
+	// records: one per (node, non-empty value), in the order they were added
+	private IntList nodes = new IntList();
+	private List<String> values = new ArrayList<>();
+	
+	// tree nodes: distinct lowercased values, tree node 0 is the root
+	private List<char[]> keys = new ArrayList<>();
+	private Map<String, Integer> keyIndex = new HashMap<>();
+	// edge label (distance to the parent), first child and next sibling per tree node, -1: none
+	private IntList edge = new IntList();
+	private IntList firstChild = new IntList();
+	private IntList nextSibling = new IntList();
+	// records of a tree node as a linked list: first record per tree node, next record per record
+	private IntList firstRecord = new IntList();
+	private IntList nextRecord = new IntList();
+	
+	private BitParallelEditDistance distance = new BitParallelEditDistance();
+	
+	// statistics: queries, distance computations of the queries
+	private long queries = 0;
+	private long computations = 0;
+	
+	// Index of all nodes of the map
+	public BKTree(NodeMap map, String attribute)
+	{
+		this(map, attribute, map.size());
+	}
+	
+	// Index of the nodes 0..count-1 of the map, add further nodes with add()
+	public BKTree(NodeMap map, String attribute, int count)
+	{
+		this.map = map;
+		this.attribute = attribute;
+		for (int i = 0; i < count; i++)
+		{
+			add(i);
+		}
+	}
+	
+	// Adds the values of a node of the map (dense index)
+	public void add(int node)
+	{
+		for (String value : map.getNode(node).getAttribute(attribute))
+		{
+			if (value.isEmpty()) continue;
+			int record = values.size();
+			nodes.add(node);
+			values.add(value);
+			
+			char[] key = lowerCase(value);
+			String k = new String(key);
+			Integer index = keyIndex.get(k);
+			if (index == null)
+			{
+				index = insert(key);
+				keyIndex.put(k, index);
+			}
+			nextRecord.add(firstRecord.get(index));
+			firstRecord.set(index, record);
+		}
+	}
+	
+	// All records within the distance (exact, no further candidates)
+	@Override
+	public int[] candidates(String value, int maxDistance)
+	{
+		queries++;
+		IntList result = new IntList();
+		if (keys.isEmpty() || maxDistance < 0) return result.toArray();
+		
+		char[] query = lowerCase(value);
+		distance.setPattern(query, query.length);
+		IntList stack = new IntList();
+		stack.add(0);
+		while (stack.size() > 0)
+		{
+			int t = stack.removeLast();
+			char[] key = keys.get(t);
+			// exact distance, needed to select the children (never larger than the longer string)
+			int d = distance.distance(key, key.length, Math.max(query.length, key.length));
+			computations++;
+			if (d <= maxDistance)
+			{
+				for (int r = firstRecord.get(t); r >= 0; r = nextRecord.get(r)) result.add(r);
+			}
+			for (int c = firstChild.get(t); c >= 0; c = nextSibling.get(c))
+			{
+				if (Math.abs(edge.get(c) - d) <= maxDistance) stack.add(c);
+			}
+		}
+		return result.toArray();
+	}
+	
+	@Override
+	public int[] search(String value, int maxDistance)
+	{
+		int[] records = candidates(value, maxDistance);
+		int[] found = new int[records.length];
+		for (int k = 0; k < records.length; k++)
+		{
+			found[k] = nodes.get(records[k]);
+		}
+		Arrays.sort(found);
+		int distinct = 0;
+		for (int k = 0; k < found.length; k++)
+		{
+			if (k == 0 || found[k] != found[k - 1]) found[distinct++] = found[k];
+		}
+		return Arrays.copyOf(found, distinct);
+	}
+	
+	// Print the statistics of the queries so far into console
+	public void printStatistics()
+	{
+		System.out.println("Queries = " + queries + ", values = " + size() + ", distinct values = " + keys.size());
+		System.out.println("Distance computations = " + computations + (queries > 0 ? ", per query = " + computations / queries : ""));
+	}
+	
+	// Getters
+	@Override
+	public NodeMap getMap() {
+		return map;
+	}
+	
+	public String getAttribute() {
+		return attribute;
+	}
+	
+	@Override
+	public int size() {
+		return values.size();
+	}
+	
+	@Override
+	public int getNode(int record) {
+		return nodes.get(record);
+	}
+	
+	@Override
+	public String getValue(int record) {
+		return values.get(record);
+	}
+	
+	public long getQueries() {
+		return queries;
+	}
+	
+	public long getComputations() {
+		return computations;
+	}
+	
+	// Inserts a new distinct value, returns its tree node
+	private int insert(char[] key)
+	{
+		int index = keys.size();
+		keys.add(key);
+		firstChild.add(-1);
+		nextSibling.add(-1);
+		firstRecord.add(-1);
+		if (index == 0)
+		{
+			edge.add(0);
+			return index;
+		}
+		
+		distance.setPattern(key, key.length);
+		int t = 0;
+		while (true)
+		{
+			char[] parent = keys.get(t);
+			int d = distance.distance(parent, parent.length, Math.max(key.length, parent.length));
+			int child = firstChild.get(t);
+			while (child >= 0 && edge.get(child) != d) child = nextSibling.get(child);
+			if (child < 0)
+			{
+				edge.add(d);
+				nextSibling.set(index, firstChild.get(t));
+				firstChild.set(t, index);
+				return index;
+			}
+			t = child;
+		}
+	}
+	
+	private static char[] lowerCase(String s)
+	{
+		char[] chars = new char[s.length()];
+		for (int i = 0; i < chars.length; i++) chars[i] = Character.toLowerCase(s.charAt(i));
+		return chars;
+	}
+}
@@ -0,0 +1,52 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package uma.wdi.ir.index;
+
+import uma.wdi.ir.NodeMap;
+
+/**
+ * Index of the non-empty values of one attribute of a NodeMap, for case-insensitive Levenshtein 
+ * range queries. Each (node, value) is a record. Used by EditDistanceJoin as candidate generator.
+ *
+ */
+public interface EditDistanceIndex {
+	/**
+	 * Find the records possibly within an edit distance of a value
+	 * @param value the query
+	 * @param maxDistance the largest edit distance
+	 * @return the records, including all those within the distance
+	 */
+	public int[] candidates(String value, int maxDistance);
+	
+	/**
+	 * Find the nodes with a value within an edit distance
+	 * @param value the query
+	 * @param maxDistance the largest edit distance
+	 * @return dense indexes of the nodes, sorted, without duplicates
+	 */
+	public int[] search(String value, int maxDistance);
+	
+	// Dense index of the node a record belongs to
+	public int getNode(int record);
+	
+	// Value of a record, as in the node
+	public String getValue(int record);
+	
+	// Number of records
+	public int size();
+	
+	// The indexed map
+	public NodeMap getMap();
+}
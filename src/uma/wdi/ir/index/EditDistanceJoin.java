@@ -0,0 +1,114 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/* Edit-distance join: finds the node pairs that SimpleMatcher(attribute, LevensteinSimilarityFunction, threshold)
+ * would match (e.g. LevensteinTitleMatcher), without comparing all pairs. The values of the second map are 
+ * indexed, by default by their q-grams (QGramIndex), or by a given index (e.g. a BKTree that grows with the map); 
+ * each value of the first map is looked up with the largest edit distance any partner could have at the 
+ * threshold, and only the candidates are compared. 
+ * */
+
+package uma.wdi.ir.index;
+
+import uma.wdi.ir.LongHashSet;
+import uma.wdi.ir.LongList;
+import uma.wdi.ir.NodeMap;
+import uma.wdi.ir.similarity.LevensteinSimilarityFunction;
+
+public class EditDistanceJoin extends AbstractSimilarityJoin 
+{
+	private int q;
+	private LevensteinSimilarityFunction function = new LevensteinSimilarityFunction();
+	// index of the last join, reused if the second map is the same
+	private EditDistanceIndex index = null;
+	
+	public EditDistanceJoin(String attribute, double threshold)
+	{
+		this(attribute, threshold, QGramIndex.DEFAULT_Q);
+	}
+	
+	public EditDistanceJoin(String attribute, double threshold, int q)
+	{
+		super(attribute, threshold);
+		this.q = q;
+	}
+	
+	@Override
+	public LongList join(NodeMap m1, NodeMap m2)
+	{
+		pairs = verified = similar = 0;
+		// nothing can be ruled out: even the largest distance reaches the threshold
+		if (threshold <= 0) return joinAllPairs(m1, m2, function);
+		
+		if (index == null || index.getMap() != m2) index = new QGramIndex(m2, attribute, q);
+		LongHashSet result = new LongHashSet();
+		int values1 = 0;
+		for (int i1 = 0; i1 < m1.size(); i1++)
+		{
+			for (String value : m1.getNode(i1).getAttribute(attribute))
+			{
+				values1++;
+				// empty values: similarity 0 or undefined, below any positive threshold
+				if (value.isEmpty()) continue;
+				for (int record : index.candidates(value, maxDistance(value.length())))
+				{
+					verified++;
+					if (function.compare(value, index.getValue(record), threshold) >= threshold)
+					{
+						similar++;
+						addPair(result, m1, i1, m2, index.getNode(record));
+					}
+				}
+			}
+		}
+		pairs = (long) values1 * countValues(m2);
+		return sorted(result);
+	}
+	
+	// Print the statistics of the last join into console
+	@Override
+	public void printStatistics()
+	{
+		System.out.println("Value pairs = " + pairs + ", q = " + q);
+		System.out.println("Verified = " + verified + ", similar = " + similar);
+	}
+	
+	public EditDistanceIndex getIndex() {
+		return index;
+	}
+	
+	// Use an index over the values of the join's attribute in the second map, instead of building a QGramIndex
+	public void setIndex(EditDistanceIndex index) {
+		this.index = index;
+	}
+	
+	/* Largest edit distance of a value of length n to a partner with similarity >= threshold: 
+	 * the distance is at least the difference of the lengths, so the partner has at most n / threshold 
+	 * characters, and the allowed distance grows with the length of the longer value */
+	private int maxDistance(int n)
+	{
+		int longest = (int) Math.min(Integer.MAX_VALUE / 2, Math.ceil(n / threshold) + 1);
+		return LevensteinSimilarityFunction.maxDistance(longest, threshold);
+	}
+	
+	private int countValues(NodeMap map)
+	{
+		int count = 0;
+		for (int i = 0; i < map.size(); i++)
+		{
+			count += map.getNode(i).getAttribute(attribute).size();
+		}
+		return count;
+	}
+}
@@ -0,0 +1,308 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/* Inverted index from q-grams to the values of one attribute of a NodeMap, for edit-distance lookups.
+ * Values are compared case-insensitively, as in LevensteinSimilarityFunction, and padded with q-1 
+ * sentinels on both sides, so a value of length n has n+q-1 q-grams. One edit operation changes at 
+ * most q of them, so two values of lengths n and m within edit distance k share at least
+ * max(n, m) + q - 1 - k*q q-grams (count filter) and differ in length by at most k (length filter).
+ * Only the values passing both filters are candidates; search() verifies them with the exact distance.
+ * Not thread-safe: the counters of a query are reused.
+ * */
+
+package uma.wdi.ir.index;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import uma.wdi.ir.IntList;
+import uma.wdi.ir.LongList;
+import uma.wdi.ir.NodeMap;
+import uma.wdi.ir.similarity.BitParallelEditDistance;
+
+public class QGramIndex implements EditDistanceIndex
+{
+	public static final int DEFAULT_Q = 3;
+	// a q-gram is packed into a long, 17 bits per character (character + 1, 0 for the sentinel)
+	private static final int MAX_Q = 3;
+	
+	private NodeMap map;
+	private String attribute;
+	private int q;
+	
+	// records: one per (node, non-empty value), sorted by length
+	private int[] nodes;
+	private char[][] values;
+	private String[] originals;
+	// q-gram -> pack(record, occurrences of the q-gram in the record), by record
+	private Map<Long, LongList> postings = new HashMap<>();
+	
+	// per record: q-grams shared with the current query, query the count belongs to
+	private int[] common;
+	private int[] queryOf;
+	private int query = 0;
+	private BitParallelEditDistance distance = new BitParallelEditDistance();
+	
+	// statistics: queries, candidates after the filters, values within the distance
+	private long queries = 0;
+	private long candidates = 0;
+	private long results = 0;
+	
+	public QGramIndex(NodeMap map, String attribute)
+	{
+		this(map, attribute, DEFAULT_Q);
+	}
+	
+	public QGramIndex(NodeMap map, String attribute, int q)
+	{
+		if (q < 1 || q > MAX_Q) throw new IllegalArgumentException("q has to be between 1 and " + MAX_Q + ": " + q);
+		this.map = map;
+		this.attribute = attribute;
+		this.q = q;
+		
+		IntList recordNodes = new IntList();
+		List<String> recordValues = new ArrayList<>();
+		for (int i = 0; i < map.size(); i++)
+		{
+			for (String value : map.getNode(i).getAttribute(attribute))
+			{
+				if (value.isEmpty()) continue;
+				recordNodes.add(i);
+				recordValues.add(value);
+			}
+		}
+		
+		// records by length, so that a length range is a range of records
+		Integer[] order = new Integer[recordNodes.size()];
+		for (int r = 0; r < order.length; r++) order[r] = r;
+		final List<String> v = recordValues;
+		Arrays.sort(order, new Comparator<Integer>()
+		{
+			@Override
+			public int compare(Integer r1, Integer r2)
+			{
+				return Integer.compare(v.get(r1).length(), v.get(r2).length());
+			}
+		});
+		
+		nodes = new int[order.length];
+		values = new char[order.length][];
+		originals = new String[order.length];
+		for (int r = 0; r < order.length; r++)
+		{
+			nodes[r] = recordNodes.get(order[r]);
+			originals[r] = recordValues.get(order[r]);
+			values[r] = lowerCase(originals[r]);
+			
+			long[] grams = grams(values[r], values[r].length);
+			for (int g = 0; g < grams.length; )
+			{
+				int end = g;
+				while (end < grams.length && grams[end] == grams[g]) end++;
+				LongList list = postings.get(grams[g]);
+				if (list == null)
+				{
+					list = new LongList(4);
+					postings.put(grams[g], list);
+				}
+				list.add(LongList.pack(r, end - g));
+				g = end;
+			}
+		}
+		common = new int[order.length];
+		queryOf = new int[order.length];
+	}
+	
+	@Override
+	public int[] search(String value, int maxDistance)
+	{
+		char[] pattern = lowerCase(value);
+		int[] records = candidates(value, maxDistance);
+		int[] found = new int[records.length];
+		int count = 0;
+		if (pattern.length > 0) distance.setPattern(pattern, pattern.length);
+		for (int record : records)
+		{
+			// the distance to an empty string is the length of the other
+			int d = (pattern.length == 0) ? values[record].length : distance.distance(values[record], values[record].length, maxDistance);
+			if (d <= maxDistance) found[count++] = nodes[record];
+		}
+		results += count;
+		
+		found = Arrays.copyOf(found, count);
+		Arrays.sort(found);
+		int distinct = 0;
+		for (int k = 0; k < count; k++)
+		{
+			if (k == 0 || found[k] != found[k - 1]) found[distinct++] = found[k];
+		}
+		return Arrays.copyOf(found, distinct);
+	}
+	
+	// Records that pass the length and count filter, a superset of the values within the distance
+	@Override
+	public int[] candidates(String value, int maxDistance)
+	{
+		queries++;
+		if (maxDistance < 0) return new int[0];
+		char[] chars = lowerCase(value);
+		int n = chars.length;
+		query++;
+		
+		// shared q-grams of all records that share at least one
+		IntList touched = new IntList();
+		long[] grams = grams(chars, n);
+		for (int g = 0; g < grams.length; )
+		{
+			int end = g;
+			while (end < grams.length && grams[end] == grams[g]) end++;
+			int occurrences = end - g;
+			LongList list = postings.get(grams[g]);
+			g = end;
+			if (list == null) continue;
+			for (int k = 0; k < list.size(); k++)
+			{
+				long entry = list.get(k);
+				int record = LongList.first(entry);
+				if (queryOf[record] != query)
+				{
+					queryOf[record] = query;
+					common[record] = 0;
+					touched.add(record);
+				}
+				common[record] += Math.min(occurrences, LongList.second(entry));
+			}
+		}
+		
+		IntList result = new IntList();
+		// without a shared q-gram, values of a length close to n can still be within the distance 
+		if (n + q - 1 - maxDistance * q <= 0)
+		{
+			int last = firstLonger(n + maxDistance);
+			for (int record = firstLonger(n - maxDistance - 1); record < last; record++)
+			{
+				int shared = (queryOf[record] == query) ? common[record] : 0;
+				if (shared >= minCommon(n, values[record].length, maxDistance)) result.add(record);
+			}
+		}
+		else
+		{
+			for (int t = 0; t < touched.size(); t++)
+			{
+				int record = touched.get(t);
+				int m = values[record].length;
+				if (Math.abs(n - m) <= maxDistance && common[record] >= minCommon(n, m, maxDistance)) result.add(record);
+			}
+		}
+		candidates += result.size();
+		return result.toArray();
+	}
+	
+	// Print the statistics of the queries so far into console
+	public void printStatistics()
+	{
+		System.out.println("Queries = " + queries + ", values = " + size() + ", q = " + q);
+		System.out.println("Candidates = " + candidates + ", within the distance = " + results);
+	}
+	
+	// Getters
+	@Override
+	public NodeMap getMap() {
+		return map;
+	}
+	
+	public String getAttribute() {
+		return attribute;
+	}
+	
+	public int getQ() {
+		return q;
+	}
+	
+	@Override
+	public int size() {
+		return values.length;
+	}
+	
+	@Override
+	public int getNode(int record) {
+		return nodes[record];
+	}
+	
+	@Override
+	public String getValue(int record) {
+		return originals[record];
+	}
+	
+	public long getQueries() {
+		return queries;
+	}
+	
+	public long getCandidates() {
+		return candidates;
+	}
+	
+	public long getResults() {
+		return results;
+	}
+	
+	// Shared q-grams required for an edit distance <= k (count filter)
+	private int minCommon(int n, int m, int k)
+	{
+		return Math.max(n, m) + q - 1 - k * q;
+	}
+	
+	// First record longer than length
+	private int firstLonger(int length)
+	{
+		int lo = 0;
+		int hi = values.length;
+		while (lo < hi)
+		{
+			int mid = (lo + hi) >>> 1;
+			if (values[mid].length <= length) lo = mid + 1;
+			else hi = mid;
+		}
+		return lo;
+	}
+	
+	// Padded q-grams of chars[0..n), sorted (equal q-grams are adjacent)
+	private long[] grams(char[] chars, int n)
+	{
+		long[] grams = new long[n + q - 1];
+		for (int g = 0; g < grams.length; g++)
+		{
+			long gram = 0;
+			// the q-gram ending at position g of the string padded with q-1 sentinels on both sides
+			for (int p = g - q + 1; p <= g; p++)
+			{
+				gram = (gram << 17) | ((p >= 0 && p < n) ? chars[p] + 1 : 0);
+			}
+			grams[g] = gram;
+		}
+		Arrays.sort(grams);
+		return grams;
+	}
+	
+	private static char[] lowerCase(String s)
+	{
+		char[] chars = new char[s.length()];
+		for (int i = 0; i < chars.length; i++) chars[i] = Character.toLowerCase(s.charAt(i));
+		return chars;
+	}
+}
@@ -0,0 +1,279 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/* Set-similarity join (AllPairs / PPJoin): finds the node pairs of two maps whose values of an attribute
+ * have a token-set similarity >= threshold (e.g. Jaccard of the title words), without comparing all pairs.
+ * Tokens are ordered by frequency, rare tokens first. Two token sets that are similar enough
+ *  - have similar sizes (length filter),
+ *  - share a token within the first few tokens of each (prefix filter, only these prefixes are indexed),
+ *  - can still reach the required overlap from the position of each shared prefix token (positional filter).
+ * The remaining candidates are verified with the exact score of the similarity function, so the result is 
+ * the same as matching all pairs with SimpleMatcher(attribute, function, threshold) and NoBlockingOperator.
+ * */
+
+package uma.wdi.ir.index;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import uma.wdi.ir.IntList;
+import uma.wdi.ir.LongHashSet;
+import uma.wdi.ir.LongList;
+import uma.wdi.ir.NodeMap;
+import uma.wdi.ir.similarity.SetSimilarityFunction;
+import uma.wdi.ir.similarity.TokenSetProfile;
+
+public class SetSimilarityJoin extends AbstractSimilarityJoin
+{
+	// the filters use a slightly lower threshold: scores are computed in float and may round up to the threshold
+	private static final double MARGIN = 1e-6;
+	
+	private SetSimilarityFunction function;
+	
+	// statistics of the last join, in value pairs
+	private long prunedByLength = 0;
+	private long prunedByPrefix = 0;
+	private long prunedByPosition = 0;
+	
+	public SetSimilarityJoin(String attribute, SetSimilarityFunction function, double threshold)
+	{
+		super(attribute, threshold);
+		this.function = function;
+	}
+	
+	@Override
+	public LongList join(NodeMap m1, NodeMap m2)
+	{
+		pairs = prunedByLength = prunedByPrefix = prunedByPosition = verified = similar = 0;
+		if (threshold - MARGIN <= 0) return joinAllPairs(m1, m2, function);
+		
+		// token ranks by frequency in both maps
+		Map<String, int[]> frequencies = new HashMap<>();
+		List<String> tokens = new ArrayList<>();
+		List<TokenSetProfile> values1 = new ArrayList<>();
+		List<TokenSetProfile> values2 = new ArrayList<>();
+		IntList nodes1 = profiles(m1, values1, frequencies, tokens);
+		IntList nodes2 = profiles(m2, values2, frequencies, tokens);
+		Map<String, Integer> ranks = rank(tokens, frequencies);
+		int[][] records1 = records(values1, ranks);
+		int[][] records2 = (m1 == m2) ? records1 : records(values2, ranks);
+		pairs = (long) records1.length * records2.length;
+		
+		// index of the prefixes of the second map: token rank -> pack(record, position in record)
+		LongList[] index = new LongList[ranks.size()];
+		for (int y = 0; y < records2.length; y++)
+		{
+			int[] record = records2[y];
+			for (int j = 0; j < prefixLength(record.length); j++)
+			{
+				if (index[record[j]] == null) index[record[j]] = new LongList(4);
+				index[record[j]].add(LongList.pack(y, j));
+			}
+		}
+		
+		LongHashSet result = new LongHashSet();
+		// per record of the second map: overlap found so far in the prefixes (-1: pruned), probe it was last seen by
+		int[] overlap = new int[records2.length];
+		int[] seenBy = new int[records2.length];
+		Arrays.fill(seenBy, -1);
+		int[] candidates = new int[records2.length];
+		double t = threshold - MARGIN;
+		
+		for (int x = 0; x < records1.length; x++)
+		{
+			int[] record = records1[x];
+			int size = record.length;
+			int minSize = (int) Math.ceil(function.minPartnerSize(size, t));
+			double maxSize = Math.floor(function.maxPartnerSize(size, t));
+			int count = 0;
+			
+			for (int i = 0; i < prefixLength(size); i++)
+			{
+				LongList list = index[record[i]];
+				if (list == null) continue;
+				for (int k = 0; k < list.size(); k++)
+				{
+					long entry = list.get(k);
+					int y = LongList.first(entry);
+					int j = LongList.second(entry);
+					int sizeY = records2[y].length;
+					if (seenBy[y] != x)
+					{
+						seenBy[y] = x;
+						if (sizeY < minSize || sizeY > maxSize)
+						{
+							overlap[y] = -1;
+							prunedByLength++;
+							continue;
+						}
+						overlap[y] = 0;
+						candidates[count++] = y;
+					}
+					if (overlap[y] < 0) continue;
+					
+					int required = (int) Math.ceil(function.minOverlap(size, sizeY, t));
+					if (overlap[y] + 1 + Math.min(size - i - 1, sizeY - j - 1) >= required)
+					{
+						overlap[y]++;
+					}
+					else
+					{
+						overlap[y] = -1;
+						prunedByPosition++;
+					}
+				}
+			}
+			
+			for (int c = 0; c < count; c++)
+			{
+				int y = candidates[c];
+				if (overlap[y] < 0) continue;
+				verified++;
+				double score = function.score(common(record, records2[y]), size, records2[y].length);
+				if (score >= threshold)
+				{
+					similar++;
+					addPair(result, m1, nodes1.get(x), m2, nodes2.get(y));
+				}
+			}
+		}
+		// pairs that never met in the index
+		prunedByPrefix = pairs - verified - prunedByLength - prunedByPosition;
+		
+		return sorted(result);
+	}
+	
+	// Print how many value pairs each filter pruned into console
+	@Override
+	public void printStatistics()
+	{
+		System.out.println("Value pairs = " + pairs);
+		System.out.println("Pruned by length filter = " + prunedByLength);
+		System.out.println("Pruned by prefix filter = " + prunedByPrefix);
+		System.out.println("Pruned by positional filter = " + prunedByPosition);
+		System.out.println("Verified = " + verified + ", similar = " + similar);
+	}
+	
+	// Getters, statistics of the last join (in pairs of values)
+	public long getPrunedByLength() {
+		return prunedByLength;
+	}
+	
+	public long getPrunedByPrefix() {
+		return prunedByPrefix;
+	}
+	
+	public long getPrunedByPosition() {
+		return prunedByPosition;
+	}
+	
+	// Number of the first tokens of a set that have to be indexed / probed
+	private int prefixLength(int size)
+	{
+		// the smallest overlap any set of a possible size needs
+		double t = threshold - MARGIN;
+		int overlap = (int) Math.ceil(function.minOverlap(size, function.minPartnerSize(size, t), t));
+		return Math.min(size, Math.max(1, size - overlap + 1));
+	}
+	
+	// Profiles of the values of all nodes with at least one token, returns the node of each profile
+	private IntList profiles(NodeMap map, List<TokenSetProfile> values, Map<String, int[]> frequencies, List<String> tokens)
+	{
+		IntList nodes = new IntList();
+		for (int i = 0; i < map.size(); i++)
+		{
+			for (String value : map.getNode(i).getAttribute(attribute))
+			{
+				TokenSetProfile profile = function.prepare(value);
+				// no tokens: the score is 0 or undefined, below any positive threshold
+				if (profile.size() == 0) continue;
+				values.add(profile);
+				nodes.add(i);
+				for (String token : profile.getTokens())
+				{
+					int[] frequency = frequencies.get(token);
+					if (frequency == null)
+					{
+						frequencies.put(token, new int[]{1});
+						tokens.add(token);
+					}
+					else frequency[0]++;
+				}
+			}
+		}
+		return nodes;
+	}
+	
+	// Ranks of the tokens: rare tokens first, ties in the order the tokens were seen
+	private static Map<String, Integer> rank(List<String> tokens, final Map<String, int[]> frequencies)
+	{
+		List<String> sorted = new ArrayList<>(tokens);
+		Collections.sort(sorted, new Comparator<String>()
+		{
+			@Override
+			public int compare(String t1, String t2)
+			{
+				return Integer.compare(frequencies.get(t1)[0], frequencies.get(t2)[0]);
+			}
+		});
+		Map<String, Integer> ranks = new HashMap<>();
+		for (int r = 0; r < sorted.size(); r++)
+		{
+			ranks.put(sorted.get(r), r);
+		}
+		return ranks;
+	}
+	
+	// Token sets as sorted ranks
+	private static int[][] records(List<TokenSetProfile> values, Map<String, Integer> ranks)
+	{
+		int[][] records = new int[values.size()][];
+		for (int v = 0; v < records.length; v++)
+		{
+			String[] tokens = values.get(v).getTokens();
+			int[] record = new int[tokens.length];
+			for (int k = 0; k < tokens.length; k++)
+			{
+				record[k] = ranks.get(tokens[k]);
+			}
+			Arrays.sort(record);
+			records[v] = record;
+		}
+		return records;
+	}
+	
+	private static int common(int[] r1, int[] r2)
+	{
+		int i = 0;
+		int j = 0;
+		int common = 0;
+		while (i < r1.length && j < r2.length)
+		{
+			if (r1[i] == r2[j])
+			{
+				common++;
+				i++;
+				j++;
+			}
+			else if (r1[i] < r2[j]) i++;
+			else j++;
+		}
+		return common;
+	}
+}
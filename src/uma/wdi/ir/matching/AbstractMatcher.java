@@ -14,7 +14,10 @@
 
 package uma.wdi.ir.matching;
 
+import java.util.concurrent.atomic.AtomicLong;
+
 import uma.wdi.ir.ANode;
+import uma.wdi.ir.NodeMap;
 
 public abstract class AbstractMatcher 
 {
@@ -22,7 +25,8 @@ public abstract class AbstractMatcher
 	 * An abstract matcher all matchers should extend
 	 */
 	
-	private long count = 0;
+	// thread-safe, matchers may be called from several threads (see Evaluator.setParallelism)
+	private AtomicLong count = new AtomicLong();
 
 	// if a matching score >= threshold, we consider two entities to be duplicates
 	private double threshold = 0.0;
@@ -31,6 +35,10 @@ public abstract class AbstractMatcher
 		threshold = t;
 	}
 	
+	public double getThreshold() {
+		return threshold;
+	}
+	
 	/**
 	 * Determines whether two nodes match or not
 	 * @param n1 the first node
@@ -38,8 +46,60 @@ public abstract class AbstractMatcher
 	 * @return true if nodes match
 	 */
 	public boolean match(ANode n1, ANode n2) {
-		count++;
-		return doMatch(n1, n2)>=threshold;
+		count.incrementAndGet();
+		return decide(n1, n2, threshold);
+	}
+	
+	/**
+	 * Determines the matching score of two nodes, regardless of the threshold (counts as a matching operation)
+	 * @param n1 the first node
+	 * @param n2 the second node
+	 * @return the score
+	 */
+	public double score(ANode n1, ANode n2) {
+		count.incrementAndGet();
+		return doMatch(n1, n2);
+	}
+	
+	/**
+	 * Determines the matching score of two nodes, exactly only if it reaches minScore (counts as a matching operation)
+	 * @param n1 the first node
+	 * @param n2 the second node
+	 * @param minScore the lowest score of interest
+	 * @return the score if it is >= minScore, otherwise a value < minScore
+	 */
+	public double score(ANode n1, ANode n2, double minScore) {
+		count.incrementAndGet();
+		return doMatch(n1, n2, minScore);
+	}
+	
+	/**
+	 * Determines the matching scores of one node and several candidates (counts as a matching operation per candidate)
+	 * @param n1 the first node
+	 * @param map2 the map of the candidates
+	 * @param candidates dense indexes of nodes in map2
+	 * @param from first candidate
+	 * @param to end of the candidates (exclusive)
+	 * @param minScore the lowest score of interest
+	 * @param scores receives the score of candidates[k] at scores[k - from], as score(n1, n2, minScore)
+	 */
+	public void scoreAll(ANode n1, NodeMap map2, int[] candidates, int from, int to, double minScore, double[] scores) {
+		count.addAndGet(Math.max(0, to - from));
+		doMatchAll(n1, map2, candidates, from, to, minScore, scores);
+	}
+	
+	/**
+	 * Determines whether one node and several candidates match (counts as a matching operation per candidate)
+	 * @param n1 the first node
+	 * @param map2 the map of the candidates
+	 * @param candidates dense indexes of nodes in map2
+	 * @param from first candidate
+	 * @param to end of the candidates (exclusive)
+	 * @param matches receives the decision for candidates[k] at matches[k - from], as match(n1, n2)
+	 */
+	public void matchAll(ANode n1, NodeMap map2, int[] candidates, int from, int to, boolean[] matches) {
+		count.addAndGet(Math.max(0, to - from));
+		decideAll(n1, map2, candidates, from, to, threshold, matches);
 	}
 	
 	/**
@@ -47,15 +107,50 @@ public abstract class AbstractMatcher
 	 * @return
 	 */
 	public long getCount() {
-		return count;
+		return count.get();
 	}
 	
 	/**
 	 * Resets the counter
 	 */
 	public void resetCounter() {
-		count = 0;
+		count.set(0);
 	}
 	
 	public abstract double doMatch(ANode n1, ANode n2);
+	
+	/**
+	 * Matchers that can stop early for pairs below minScore override this, by default the score is exact
+	 * @return the same score as doMatch(n1, n2) if that is >= minScore, otherwise a value < minScore
+	 */
+	public double doMatch(ANode n1, ANode n2, double minScore) {
+		return doMatch(n1, n2);
+	}
+	
+	/**
+	 * Matchers that can decide whether the score reaches the threshold without computing it exactly override this
+	 * @return true if doMatch(n1, n2) >= threshold
+	 */
+	protected boolean decide(ANode n1, ANode n2, double threshold) {
+		return doMatch(n1, n2, threshold)>=threshold;
+	}
+	
+	/**
+	 * Batch version of doMatch(n1, n2, minScore), one call per candidate by default. 
+	 * Matchers that can do work once for all candidates (e.g. look up the values of n1) override this
+	 */
+	protected void doMatchAll(ANode n1, NodeMap map2, int[] candidates, int from, int to, double minScore, double[] scores) {
+		for (int k = from; k < to; k++) {
+			scores[k - from] = doMatch(n1, map2.getNode(candidates[k]), minScore);
+		}
+	}
+	
+	/**
+	 * Batch version of decide(n1, n2, threshold), one call per candidate by default
+	 */
+	protected void decideAll(ANode n1, NodeMap map2, int[] candidates, int from, int to, double threshold, boolean[] matches) {
+		for (int k = from; k < to; k++) {
+			matches[k - from] = decide(n1, map2.getNode(candidates[k]), threshold);
+		}
+	}
 }
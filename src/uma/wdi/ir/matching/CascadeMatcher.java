@@ -0,0 +1,225 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package uma.wdi.ir.matching;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import uma.wdi.ir.ANode;
+import uma.wdi.ir.similarity.SimilarityFunction;
+
+/**
+ * Chains matchers as stages, from cheap to expensive (e.g. year, length ratio, platform overlap before 
+ * Monge-Elkan): a pair scoring below the minimum of a stage is rejected with score 0 without running the 
+ * later stages, otherwise the score is the score of the last stage. 
+ * Keeps the calls, pass rate and time of every stage (see printStatistics), the filter stages can be 
+ * reordered by these measurements (see sortStages).
+ * 
+ */
+public class CascadeMatcher extends AbstractMatcher {
+	
+	private List<Stage> stages = new ArrayList<>();
+	
+	public CascadeMatcher(double threshold)
+	{
+		this.setThreshold(threshold);
+	}
+	
+	/**
+	 * Adds a stage, after the stages added so far. The last stage gives the score: its pairs are not 
+	 * rejected at minScore, the threshold of the cascade applies.
+	 * @param matcher
+	 * @param minScore pairs scoring below are rejected
+	 */
+	public void addStage(AbstractMatcher matcher, double minScore)
+	{
+		stages.add(new Stage(matcher.getClass().getSimpleName(), matcher, minScore));
+	}
+	
+	/**
+	 * Adds a stage that compares the values of an attribute with a similarity function (as SimpleMatcher)
+	 * @param attribute
+	 * @param function
+	 * @param minScore pairs scoring below are rejected
+	 */
+	public void addStage(String attribute, SimilarityFunction function, double minScore)
+	{
+		String name = function.getClass().getSimpleName() + "(" + attribute + ")";
+		stages.add(new Stage(name, new SimpleMatcher(attribute, function, minScore), minScore));
+	}
+	
+	@Override
+	public double doMatch(ANode n1, ANode n2) 
+	{
+		return run(n1, n2, false, 0);
+	}
+	
+	@Override
+	public double doMatch(ANode n1, ANode n2, double minScore) 
+	{
+		return run(n1, n2, true, minScore);
+	}
+	
+	// Runs the stages in order; the last one exactly, or only up to minScore if bounded
+	private double run(ANode n1, ANode n2, boolean bounded, double minScore)
+	{
+		if (stages.isEmpty()) return 0;
+		int last = stages.size() - 1;
+		for (int k = 0; k < last; k++)
+		{
+			Stage stage = stages.get(k);
+			long start = System.nanoTime();
+			boolean passed = stage.matcher.doMatch(n1, n2, stage.minScore) >= stage.minScore;
+			stage.record(start, passed);
+			if (!passed) return 0;
+		}
+		
+		Stage stage = stages.get(last);
+		long start = System.nanoTime();
+		double score = bounded ? stage.matcher.doMatch(n1, n2, minScore) : stage.matcher.doMatch(n1, n2);
+		stage.record(start, score >= getThreshold());
+		return score;
+	}
+	
+	/**
+	 * Reorders the filter stages (all but the last) by the share of pairs they rejected per nanosecond, 
+	 * highest first, so that the pairs most stages would reject are rejected soonest. 
+	 * Stages that have not run yet keep their order behind the measured ones. Not thread-safe, 
+	 * call it between runs. The scores do not change.
+	 */
+	public void sortStages()
+	{
+		if (stages.size() < 3) return;
+		List<Stage> filters = new ArrayList<>(stages.subList(0, stages.size() - 1));
+		Collections.sort(filters, new Comparator<Stage>()
+		{
+			@Override
+			public int compare(Stage s1, Stage s2)
+			{
+				return Double.compare(s2.getRejectionsPerNanosecond(), s1.getRejectionsPerNanosecond());
+			}
+		});
+		for (int k = 0; k < filters.size(); k++)
+		{
+			stages.set(k, filters.get(k));
+		}
+	}
+	
+	public void printStatistics()
+	{
+		System.out.println("stage\tmin. score\tcalls\tpassed\tpass rate\tns/call");
+		for (int k = 0; k < stages.size(); k++)
+		{
+			Stage stage = stages.get(k);
+			long calls = stage.calls.get();
+			double minScore = (k == stages.size() - 1) ? getThreshold() : stage.minScore;
+			System.out.println(stage.name + "\t" + minScore + "\t" + calls + "\t" + stage.passed.get() + "\t" 
+					+ stage.getPassRate() + "\t" + (calls == 0 ? 0 : stage.nanos.get() / calls));
+		}
+	}
+	
+	/**
+	 * Resets the statistics of all stages
+	 */
+	public void resetStatistics()
+	{
+		for (Stage stage : stages)
+		{
+			stage.calls.set(0);
+			stage.passed.set(0);
+			stage.nanos.set(0);
+		}
+	}
+	
+	public List<Stage> getStages()
+	{
+		return Collections.unmodifiableList(stages);
+	}
+	
+	/*
+	 * A matcher with its minimum score and statistics (thread-safe)
+	 */
+	public static class Stage
+	{
+		private String name;
+		private AbstractMatcher matcher;
+		private double minScore;
+		private AtomicLong calls = new AtomicLong();
+		private AtomicLong passed = new AtomicLong();
+		private AtomicLong nanos = new AtomicLong();
+		
+		Stage(String name, AbstractMatcher matcher, double minScore)
+		{
+			this.name = name;
+			this.matcher = matcher;
+			this.minScore = minScore;
+		}
+		
+		private void record(long start, boolean pass)
+		{
+			nanos.addAndGet(System.nanoTime() - start);
+			calls.incrementAndGet();
+			if (pass) passed.incrementAndGet();
+		}
+		
+		public String getName()
+		{
+			return name;
+		}
+		
+		public AbstractMatcher getMatcher()
+		{
+			return matcher;
+		}
+		
+		public double getMinScore()
+		{
+			return minScore;
+		}
+		
+		public long getCalls()
+		{
+			return calls.get();
+		}
+		
+		public long getPassed()
+		{
+			return passed.get();
+		}
+		
+		// share of the pairs that passed, 1 if the stage has not run yet
+		public double getPassRate()
+		{
+			long c = calls.get();
+			return c == 0 ? 1.0 : (double) passed.get() / c;
+		}
+		
+		public long getNanos()
+		{
+			return nanos.get();
+		}
+		
+		// share of the pairs rejected per nanosecond of the stage, 0 if it has not run yet
+		double getRejectionsPerNanosecond()
+		{
+			long c = calls.get();
+			if (c == 0) return 0;
+			return (1.0 - getPassRate()) / Math.max(1.0, (double) nanos.get() / c);
+		}
+	}
+}
@@ -14,8 +14,13 @@
 
 package uma.wdi.ir.matching;
 
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
 import uma.wdi.ir.ANode;
+import uma.wdi.ir.NodeMap;
 
 /**
  * Uses a linear combination of different matchers
@@ -31,6 +36,21 @@ public class CompoundMatcher extends AbstractMatcher {
 	
 	private double sumWeights=1.0;
 	
+	// margin for the bounds, so that rounding (the sub-matchers are summed in another order) cannot change a decision
+	private static final double EPSILON = 1e-9;
+	// result of evaluate(): the threshold is reached, whatever the remaining sub-matchers return
+	private static final double[] REACHED = new double[0];
+	
+	// threshold-aware evaluation, see setShortCircuit
+	private boolean shortCircuit = false;
+	private List<Double> costs;
+	// sub-matchers in the order they are evaluated, and the lowest / highest weighted sum of the sub-matchers from position k on
+	private int[] order;
+	private double[] minRest;
+	private double[] maxRest;
+	private AtomicLong calls = new AtomicLong();
+	private AtomicLong skipped = new AtomicLong();
+	
 	/**
 	 * Initialize with default weights. Normalizes the weights.
 	 * @param matchers
@@ -48,6 +68,7 @@ public class CompoundMatcher extends AbstractMatcher {
 		offset = 0.0;
 		
 		setThreshold(threshold);
+		sortMatchers();
 	}
 	
 	/**
@@ -66,6 +87,7 @@ public class CompoundMatcher extends AbstractMatcher {
 		this.offset = offset;
 		
 		setThreshold(threshold);
+		sortMatchers();
 	}
 	
 	@Override
@@ -82,5 +104,288 @@ public class CompoundMatcher extends AbstractMatcher {
 
 		return score;
 	}
+	
+	/**
+	 * Threshold-aware evaluation (off by default): match() and score(n1, n2, minScore) evaluate the sub-matchers 
+	 * in the order of weight per cost and stop as soon as the lowest or highest weighted sum the remaining ones 
+	 * can add settles whether the threshold is reached; each sub-matcher gets the lowest score that can still 
+	 * reach it (see AbstractMatcher.doMatch(n1, n2, minScore)). 
+	 * Decisions and scores >= minScore are the same as without it only if every sub-matcher returns scores in [0,1]: 
+	 * the bounds assume that range for the sub-matchers not evaluated yet, so a skipped sub-matcher that would return 
+	 * NaN or a score outside [0,1] cannot change the result. A NaN score of an evaluated sub-matcher means no match 
+	 * (as without short circuit, where the sum is NaN). Off for compounds with sub-matchers that leave [0,1].
+	 * @param shortCircuit
+	 */
+	public void setShortCircuit(boolean shortCircuit) {
+		this.shortCircuit = shortCircuit;
+	}
+	
+	public boolean isShortCircuit() {
+		return shortCircuit;
+	}
+	
+	/**
+	 * Relative costs of the sub-matchers, in the order of the matchers (e.g. 10 for a Levenshtein title matcher 
+	 * and 1 for a date matcher). With short circuit, the sub-matchers are evaluated by decreasing weight / cost. 
+	 * All costs are equal if not set (by decreasing weight).
+	 * @param costs
+	 */
+	public void setCosts(List<Double> costs) {
+		this.costs = costs;
+		sortMatchers();
+	}
+	
+	@Override
+	public double doMatch(ANode n1, ANode n2, double minScore) {
+		if (!canShortCircuit(minScore)) return doMatch(n1, n2);
+		double[] scores = evaluate(n1, n2, minScore, false);
+		// below minScore, any value < minScore will do
+		if (scores == null) return Math.max(0.0, minScore - EPSILON);
+		return combine(scores);
+	}
+	
+	@Override
+	protected boolean decide(ANode n1, ANode n2, double threshold) {
+		if (!canShortCircuit(threshold)) return super.decide(n1, n2, threshold);
+		double[] scores = evaluate(n1, n2, threshold, true);
+		if (scores == null) return false;
+		if (scores == REACHED) return true;
+		return combine(scores) >= threshold;
+	}
+	
+	// Scores in (0, 1] are reached iff the weighted sum (before normalising) reaches minScore * sumWeights
+	private boolean canShortCircuit(double minScore) {
+		return shortCircuit && sumWeights > 0 && minScore > 0 && minScore <= 1;
+	}
+	
+	/* Evaluates the sub-matchers in order until the bounds settle whether the weighted sum reaches minScore. 
+	 * Returns null if it cannot reach it, REACHED if it reaches it for sure (only if stopWhenReached), 
+	 * otherwise the scores of all sub-matchers (in the order of the matchers) */
+	private double[] evaluate(ANode n1, ANode n2, double minScore, boolean stopWhenReached) {
+		int n = order.length;
+		double target = minScore * sumWeights;
+		double[] scores = new double[n];
+		double sum = offset;
+		for (int k = 0; k < n; k++) {
+			if (sum + maxRest[k] < target - EPSILON) {
+				skipped.addAndGet(n - k);
+				return null;
+			}
+			if (stopWhenReached && sum + minRest[k] >= target + EPSILON) {
+				skipped.addAndGet(n - k);
+				return REACHED;
+			}
+			
+			int i = order[k];
+			double w = weights.get(i);
+			double s;
+			calls.incrementAndGet();
+			if (w > 0) {
+				// lowest score with which the sum can still reach the target
+				double need = (target - EPSILON - sum - maxRest[k + 1]) / w;
+				s = matchers.get(i).doMatch(n1, n2, need);
+				if (s < need) {
+					skipped.addAndGet(n - k - 1);
+					return null;
+				}
+			}
+			else s = matchers.get(i).doMatch(n1, n2);
+			if (Double.isNaN(s)) {
+				// the sum is NaN, it cannot reach the target
+				skipped.addAndGet(n - k - 1);
+				return null;
+			}
+			scores[i] = s;
+			sum += w * s;
+		}
+		return scores;
+	}
+	
+	/* Batch version of doMatch(n1, n2, minScore), same scores: every sub-matcher scores the candidates 
+	 * as a batch (see evaluateAll) */
+	@Override
+	protected void doMatchAll(ANode n1, NodeMap map2, int[] candidates, int from, int to, double minScore, double[] scores) {
+		evaluateAll(n1, map2, candidates, from, to, minScore, false, scores);
+	}
+	
+	// Batch version of decide(n1, n2, threshold), same decisions
+	@Override
+	protected void decideAll(ANode n1, NodeMap map2, int[] candidates, int from, int to, double threshold, boolean[] matches) {
+		double[] scores = new double[to - from];
+		evaluateAll(n1, map2, candidates, from, to, threshold, true, scores);
+		for (int k = 0; k < scores.length; k++) {
+			matches[k] = scores[k] >= threshold;
+		}
+	}
+	
+	/* Batch version of evaluate(): the sub-matchers are evaluated in order, each on all candidates that are still open. 
+	 * A sub-matcher gets the lowest need of these candidates as minScore, so a candidate is dropped exactly 
+	 * when evaluate() would drop it. Writes the scores (any value < minScore for dropped candidates, 
+	 * 1 for candidates that reach minScore for sure if stopWhenReached) */
+	private void evaluateAll(ANode n1, NodeMap map2, int[] candidates, int from, int to, double minScore, boolean stopWhenReached, double[] scores) {
+		int m = order.length;
+		int size = to - from;
+		if (size <= 0) return;
+		// sub-matcher scores, by matcher and candidate
+		double[][] subScores = new double[m][size];
+		
+		if (!canShortCircuit(minScore)) {
+			for (int i = 0; i < m; i++) {
+				matchers.get(i).doMatchAll(n1, map2, candidates, from, to, Double.NEGATIVE_INFINITY, subScores[i]);
+			}
+			double[] column = new double[m];
+			for (int c = 0; c < size; c++) {
+				for (int i = 0; i < m; i++) column[i] = subScores[i][c];
+				scores[c] = combine(column);
+			}
+			return;
+		}
+		
+		double target = minScore * sumWeights;
+		double below = Math.max(0.0, minScore - EPSILON);
+		double[] sums = new double[size];
+		Arrays.fill(sums, offset);
+		// positions (0..size-1) of the open candidates, their dense indexes and sub-matcher scores
+		int[] open = new int[size];
+		for (int c = 0; c < size; c++) open[c] = c;
+		int openCount = size;
+		int[] subset = new int[size];
+		double[] buffer = new double[size];
+		
+		for (int k = 0; k < m && openCount > 0; k++) {
+			int i = order[k];
+			double w = weights.get(i);
+			int kept = 0;
+			double lowestNeed = Double.POSITIVE_INFINITY;
+			for (int a = 0; a < openCount; a++) {
+				int c = open[a];
+				if (sums[c] + maxRest[k] < target - EPSILON) {
+					skipped.addAndGet(m - k);
+					scores[c] = below;
+					continue;
+				}
+				if (stopWhenReached && sums[c] + minRest[k] >= target + EPSILON) {
+					skipped.addAndGet(m - k);
+					scores[c] = 1.0;
+					continue;
+				}
+				if (w > 0) lowestNeed = Math.min(lowestNeed, (target - EPSILON - sums[c] - maxRest[k + 1]) / w);
+				subset[kept] = candidates[from + c];
+				open[kept++] = c;
+			}
+			openCount = kept;
+			if (openCount == 0) break;
+			
+			calls.addAndGet(openCount);
+			matchers.get(i).doMatchAll(n1, map2, subset, 0, openCount, w > 0 ? lowestNeed : Double.NEGATIVE_INFINITY, buffer);
+			kept = 0;
+			for (int a = 0; a < openCount; a++) {
+				int c = open[a];
+				double s = buffer[a];
+				if (w > 0) {
+					// exact if >= lowestNeed, otherwise below the need of every candidate
+					double need = (target - EPSILON - sums[c] - maxRest[k + 1]) / w;
+					if (s < need) {
+						skipped.addAndGet(m - k - 1);
+						scores[c] = below;
+						continue;
+					}
+				}
+				if (Double.isNaN(s)) {
+					skipped.addAndGet(m - k - 1);
+					scores[c] = below;
+					continue;
+				}
+				subScores[i][c] = s;
+				sums[c] += w * s;
+				open[kept++] = c;
+			}
+			openCount = kept;
+		}
+		
+		double[] column = new double[m];
+		for (int a = 0; a < openCount; a++) {
+			int c = open[a];
+			for (int i = 0; i < m; i++) column[i] = subScores[i][c];
+			scores[c] = combine(column);
+		}
+	}
+	
+	// Score from the scores of all sub-matchers, computed as in doMatch(n1, n2)
+	private double combine(double[] scores) {
+		double score = offset;
+		for(int i=0;i<scores.length;i++) {
+			score += weights.get(i)*scores[i];
+		}
+		
+		score /= sumWeights;
+		
+		// normalize to [0,1] interval
+		score = Math.min(1.0,Math.max(score,0.0));
+
+		return score;
+	}
+	
+	// Evaluation order and bounds for the short circuit
+	private void sortMatchers() {
+		if (matchers == null) return;
+		final int n = matchers.size();
+		final double[] priority = new double[n];
+		for (int i = 0; i < n; i++) {
+			double cost = (costs == null) ? 1.0 : costs.get(i);
+			priority[i] = Math.abs(weights.get(i)) / cost;
+		}
+		Integer[] sorted = new Integer[n];
+		for (int i = 0; i < n; i++) sorted[i] = i;
+		Arrays.sort(sorted, new Comparator<Integer>() {
+			@Override
+			public int compare(Integer i1, Integer i2) {
+				return Double.compare(priority[i2], priority[i1]);
+			}
+		});
+		
+		int[] newOrder = new int[n];
+		double[] newMin = new double[n + 1];
+		double[] newMax = new double[n + 1];
+		for (int k = n - 1; k >= 0; k--) {
+			newOrder[k] = sorted[k];
+			double w = weights.get(sorted[k]);
+			newMin[k] = newMin[k + 1] + Math.min(0.0, w);
+			newMax[k] = newMax[k + 1] + Math.max(0.0, w);
+		}
+		minRest = newMin;
+		maxRest = newMax;
+		order = newOrder;
+	}
+	
+	/**
+	 * Get the number of sub-matcher calls with short circuit
+	 * @return
+	 */
+	public long getSubMatcherCalls() {
+		return calls.get();
+	}
+	
+	/**
+	 * Get the number of sub-matcher calls the short circuit skipped
+	 * @return
+	 */
+	public long getSkippedCalls() {
+		return skipped.get();
+	}
+	
+	/**
+	 * Resets the short circuit counters
+	 */
+	public void resetStatistics() {
+		calls.set(0);
+		skipped.set(0);
+	}
+	
+	public void printStatistics() {
+		long total = calls.get() + skipped.get();
+		System.out.println("Sub-matcher calls = " + calls.get() + ", skipped = " + skipped.get() 
+				+ " (" + (total == 0 ? 0 : 100 * skipped.get() / total) + "%)");
+	}
 
 }
@@ -14,15 +14,72 @@
 
 package uma.wdi.ir.matching;
 
+import uma.wdi.ir.ANode;
+import uma.wdi.ir.AttributeDictionary;
+import uma.wdi.ir.NodeMap;
+import uma.wdi.ir.TypedValues;
 import uma.wdi.ir.similarity.DateSimilarityFunction;
 
 public class DateMatcher extends SimpleMatcher
 {
 	/**
 	 * Example of simple matcher: compare dates
+	 * Compares the first date of each node (ANode.getDate), parsed once when loading if the attribute is a DATE 
+	 * (see AttributeDictionary.setType). Unlike SimpleMatcher, which takes the max over all value pairs, only the 
+	 * first value that is a date counts; a node without a date (missing or malformed values) scores 0 
+	 * without the "wrong date format" message of DateSimilarityFunction.compare(s1, s2).
 	 */
 
+	private DateSimilarityFunction dates;
+	// AttributeDictionary index of the attribute, resolved on first use
+	private int key = -1;
+	
+	// "release", the date attribute of the videogame data (declared a DATE in IDResolution.main)
 	public DateMatcher() {
-		super("date", new DateSimilarityFunction(), 0.95);
+		this("release");
+	}
+	
+	public DateMatcher(String attribute) {
+		this(attribute, new DateSimilarityFunction());
+	}
+	
+	private DateMatcher(String attribute, DateSimilarityFunction function) {
+		super(attribute, function, 0.95);
+		this.dates = function;
+	}
+	
+	@Override
+	public double doMatch(ANode n1, ANode n2) {
+		int k = getKey();
+		return compare(n1.getDate(k), n2.getDate(k));
+	}
+	
+	@Override
+	public double doMatch(ANode n1, ANode n2, double minScore) {
+		return doMatch(n1, n2);
+	}
+	
+	@Override
+	protected void doMatchAll(ANode n1, NodeMap map2, int[] candidates, int from, int to, double minScore, double[] scores) {
+		int key = getKey();
+		int day1 = n1.getDate(key);
+		for (int k = from; k < to; k++) {
+			scores[k - from] = compare(day1, map2.getNode(candidates[k]).getDate(key));
+		}
+	}
+	
+	// the index does not change once the attribute is in the dictionary (getIndex adds it, so it is resolved once)
+	private int getKey() {
+		int k = key;
+		if (k < 0) {
+			k = AttributeDictionary.getIndex(getAttribute());
+			key = k;
+		}
+		return k;
+	}
+	
+	private double compare(int day1, int day2) {
+		if (day1 == TypedValues.NO_DATE || day2 == TypedValues.NO_DATE) return 0;
+		return dates.compare(day1, day2);
 	}
 }
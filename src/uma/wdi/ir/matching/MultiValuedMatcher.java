@@ -0,0 +1,167 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package uma.wdi.ir.matching;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import uma.wdi.ir.ANode;
+
+/**
+ * A matcher for multi-valued attributes with a small vocabulary (e.g. "platform"). The values of each node 
+ * are encoded once as a bitset over a dictionary of the values seen so far (case-insensitive, as in 
+ * ExactSimilarityFunction), and the value sets of two nodes are compared with bitwise ops and Long.bitCount 
+ * instead of comparing every pair of values. The aggregation decides how shared values become a score.
+ * 
+ */
+public class MultiValuedMatcher extends AbstractMatcher {
+	
+	public enum Aggregation
+	{
+		// 1 if the nodes share a value, 0 otherwise (max of ExactSimilarityFunction over all value pairs, as in SimpleMatcher)
+		MAX,
+		// share of equal value pairs (mean of ExactSimilarityFunction over all value pairs); 
+		// values of one node that differ only in case (e.g. "PC" and "pc") count once, unlike in the nested loop
+		MEAN,
+		// shared values / all distinct values of both nodes
+		SET_JACCARD,
+		// shared values / values of the node with fewer values
+		OVERLAP,
+		// shared values / values of the first node (how much of it the second node contains)
+		CONTAINMENT
+	}
+	
+	// bitsets of more nodes than this are dropped and encoded again when needed
+	public static final int MAX_BITSETS = 1 << 20;
+	
+	private String      attribute;
+	private Aggregation aggregation;
+	// case-folded value (see fold) -> bit
+	private ConcurrentMap<String, Integer> dictionary = new ConcurrentHashMap<>();
+	private ConcurrentMap<ANode, long[]> bitsets = new ConcurrentHashMap<>();
+	
+	public MultiValuedMatcher(String attribute, Aggregation aggregation, double threshold)
+	{
+		this.attribute = attribute;
+		this.aggregation = aggregation;
+		this.setThreshold(threshold);
+	}
+	
+	// a node without values scores 0
+	@Override
+	public double doMatch(ANode n1, ANode n2) 
+	{
+		long[] b1 = getBitset(n1);
+		long[] b2 = getBitset(n2);
+		int size1 = 0;
+		for (long word : b1) size1 += Long.bitCount(word);
+		int size2 = 0;
+		for (long word : b2) size2 += Long.bitCount(word);
+		if (size1 == 0 || size2 == 0) return 0;
+		
+		// bitsets of nodes encoded before the dictionary grew are shorter, the missing words are 0
+		int common = 0;
+		for (int i = Math.min(b1.length, b2.length) - 1; i >= 0; i--)
+		{
+			common += Long.bitCount(b1[i] & b2[i]);
+		}
+		
+		switch (aggregation)
+		{
+			case MAX:
+				return common > 0 ? 1.0 : 0.0;
+			case MEAN:
+				return (double) common / ((double) size1 * size2);
+			case SET_JACCARD:
+				return (double) common / (size1 + size2 - common);
+			case OVERLAP:
+				return (double) common / Math.min(size1, size2);
+			default:
+				return (double) common / size1;
+		}
+	}
+	
+	// Bitset of the values of a node, encoded once and kept for the next comparisons (thread-safe)
+	private long[] getBitset(ANode node)
+	{
+		long[] bitset = bitsets.get(node);
+		if (bitset == null)
+		{
+			Set<String> values = node.getAttribute(attribute);
+			int[] bits = new int[values.size()];
+			int max = -1;
+			int i = 0;
+			for (String value : values)
+			{
+				bits[i] = getBit(fold(value));
+				max = Math.max(max, bits[i++]);
+			}
+			bitset = new long[(max >> 6) + 1];
+			for (int bit : bits)
+			{
+				bitset[bit >> 6] |= 1L << bit;
+			}
+			if (bitsets.size() >= MAX_BITSETS) bitsets.clear();
+			bitsets.put(node, bitset);
+		}
+		return bitset;
+	}
+	
+	/* Same string for values that are equalsIgnoreCase (as ExactSimilarityFunction): every char folded as 
+	 * String.equalsIgnoreCase does, independent of the default locale (String.toLowerCase is not) */
+	private static String fold(String value)
+	{
+		char[] chars = new char[value.length()];
+		for (int i = 0; i < chars.length; i++)
+		{
+			chars[i] = Character.toLowerCase(Character.toUpperCase(value.charAt(i)));
+		}
+		return new String(chars);
+	}
+	
+	// Bit of a value, the value is added to the dictionary if it is new
+	private int getBit(String value)
+	{
+		Integer bit = dictionary.get(value);
+		if (bit != null) return bit;
+		return addValue(value);
+	}
+	
+	private synchronized int addValue(String value)
+	{
+		Integer bit = dictionary.get(value);
+		if (bit != null) return bit;
+		int added = dictionary.size();
+		dictionary.put(value, added);
+		return added;
+	}
+	
+	// Number of distinct values seen so far
+	public int getVocabularySize()
+	{
+		return dictionary.size();
+	}
+	
+	public String getAttribute()
+	{
+		return attribute;
+	}
+	
+	public Aggregation getAggregation()
+	{
+		return aggregation;
+	}
+}
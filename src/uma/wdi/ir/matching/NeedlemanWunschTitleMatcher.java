@@ -30,4 +30,9 @@ public class NeedlemanWunschTitleMatcher extends SimpleMatcher
 	public NeedlemanWunschTitleMatcher() {
 		super("title", new NeedlemanWunschSimilarityFunction(),0.93);
 	}
+	
+	// library: compute the scores with the library implementation instead of the faster one in this project
+	public NeedlemanWunschTitleMatcher(boolean library) {
+		super("title", new NeedlemanWunschSimilarityFunction(library),0.93);
+	}
 }
@@ -0,0 +1,35 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/* 
+ * Matches two entities, returns a score. 
+ * Add here your similarity measures and define how to combine them. 
+ * */
+
+package uma.wdi.ir.matching;
+
+public class PlatformMatcher extends MultiValuedMatcher
+{
+	/**
+	 * Example of multi-valued matcher: compare the sets of platforms
+	 */
+
+	public PlatformMatcher() {
+		super("platform", Aggregation.SET_JACCARD, 0.5);
+	}
+	
+	public PlatformMatcher(Aggregation aggregation, double threshold) {
+		super("platform", aggregation, threshold);
+	}
+}
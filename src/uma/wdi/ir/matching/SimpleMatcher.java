@@ -15,11 +15,19 @@
 package uma.wdi.ir.matching;
 
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import uma.wdi.ir.ANode;
+import uma.wdi.ir.AttributeColumn;
+import uma.wdi.ir.AttributeDictionary;
+import uma.wdi.ir.ColumnarNodeMap;
+import uma.wdi.ir.NodeMap;
 import uma.wdi.ir.similarity.DateSimilarityFunction;
 import uma.wdi.ir.similarity.LevensteinSimilarityFunction;
+import uma.wdi.ir.similarity.PreparedSimilarityFunction;
 import uma.wdi.ir.similarity.SimilarityFunction;
+import uma.wdi.ir.similarity.ThresholdSimilarityFunction;
 
 /**
  * A simple matcher that takes an XPath for a tag, and compares it 
@@ -30,13 +38,21 @@ import uma.wdi.ir.similarity.SimilarityFunction;
  */
 public class SimpleMatcher extends AbstractMatcher {
 	
+    // profiles of more values than this are dropped and prepared again when needed
+    public static final int MAX_PROFILES = 1 << 20;
+    
     private String             attribute;
     private SimilarityFunction function;
+    // the function, if it works on prepared values (null otherwise), and the profiles of the values compared so far
+    private PreparedSimilarityFunction<Object> prepared;
+    private ConcurrentMap<String, Object> profiles = new ConcurrentHashMap<>();
     
+    @SuppressWarnings("unchecked")
     public SimpleMatcher(String attribute, SimilarityFunction function, double threshold)
     {
         this.attribute = attribute;
         this.function = function;
+        if (function instanceof PreparedSimilarityFunction) prepared = (PreparedSimilarityFunction<Object>) function;
         this.setThreshold(threshold);
     }
 
@@ -55,12 +71,139 @@ public class SimpleMatcher extends AbstractMatcher {
             	// For instance, "max" is an option for a multi-valued attribute, e.g. "Canada" and "Toronto" as a birthPlace in dataset1 
             	// and only "Canada" in dataset 2 will result in matching these two attributes (similarity = 1).
             	// For lists (e.g. actors of a movie) you might implement some set intersection-based aggregation.
-            	sim = Math.max(sim, function.compare(s1, s2));            	
+            	sim = Math.max(sim, compare(s1, s2));            	
             }
         }
         return sim;
 	}
 	
+	/* Same as doMatch(n1, n2), but threshold-aware similarity functions (e.g. Levenshtein) may stop early 
+	 * for value pairs that cannot reach minScore or the best score found so far */
+	@Override
+	public double doMatch(ANode n1, ANode n2, double minScore) 
+	{
+		if (!(function instanceof ThresholdSimilarityFunction)) return doMatch(n1, n2);
+		ThresholdSimilarityFunction bounded = (ThresholdSimilarityFunction) function;
+		
+		Set<String> ss1 = n1.getAttribute(attribute);
+	    Set<String> ss2 = n2.getAttribute(attribute);
+	    
+	    double sim = 0;
+        for(String s1 : ss1) 
+        {
+            for(String s2 : ss2) 
+            {
+            	// a value pair below both cannot change the result
+            	sim = Math.max(sim, bounded.compare(s1, s2, Math.max(minScore, sim)));
+            }
+        }
+        return sim;
+	}
+	
+	/* Batch version of doMatch(n1, n2, minScore), same scores >= minScore: the attribute is looked up once, 
+	 * the values of n1 (and their profiles) are fetched once for all candidates, 
+	 * the values of the candidates are read from the columns if map2 is a ColumnarNodeMap */
+	@Override
+	protected void doMatchAll(ANode n1, NodeMap map2, int[] candidates, int from, int to, double minScore, double[] scores)
+	{
+		int key = AttributeDictionary.findIndex(attribute);
+		Set<String> ss1 = n1.getAttribute(key);
+		String[] values1 = ss1.toArray(new String[ss1.size()]);
+		Object[] profiles1 = null;
+		if (prepared != null)
+		{
+			profiles1 = new Object[values1.length];
+			for (int v = 0; v < values1.length; v++)
+			{
+				profiles1[v] = getProfile(values1[v]);
+			}
+		}
+		AttributeColumn column = (map2 instanceof ColumnarNodeMap) ? ((ColumnarNodeMap) map2).getColumn(key) : null;
+		
+		for (int k = from; k < to; k++)
+		{
+			double sim = 0;
+			if (column != null)
+			{
+				int entity = candidates[k];
+				for (int p = column.getStart(entity); p < column.getEnd(entity); p++)
+				{
+					sim = compareAll(values1, profiles1, column.getValue(p), minScore, sim);
+				}
+			}
+			else
+			{
+				for (String s2 : map2.getNode(candidates[k]).getAttribute(key))
+				{
+					sim = compareAll(values1, profiles1, s2, minScore, sim);
+				}
+			}
+			scores[k - from] = sim;
+		}
+	}
+	
+	/* Highest of sim and the similarities of s2 and the values of n1 (see doMatchAll): max does not depend 
+	 * on the order of the value pairs, so every value of n2 is visited (and its profile fetched) once */
+	private double compareAll(String[] values1, Object[] profiles1, String s2, double minScore, double sim)
+	{
+		if (function instanceof ThresholdSimilarityFunction)
+		{
+			ThresholdSimilarityFunction bounded = (ThresholdSimilarityFunction) function;
+			for (String s1 : values1)
+			{
+				sim = Math.max(sim, bounded.compare(s1, s2, Math.max(minScore, sim)));
+			}
+		}
+		else if (profiles1 != null)
+		{
+			Object profile2 = getProfile(s2);
+			for (Object profile1 : profiles1)
+			{
+				sim = Math.max(sim, prepared.comparePrepared(profile1, profile2));
+			}
+		}
+		else
+		{
+			for (String s1 : values1)
+			{
+				sim = Math.max(sim, function.compare(s1, s2));
+			}
+		}
+		return sim;
+	}
+	
+	// Batch version of match(n1, n2): a candidate matches if its score (bounded by the threshold) reaches the threshold
+	@Override
+	protected void decideAll(ANode n1, NodeMap map2, int[] candidates, int from, int to, double threshold, boolean[] matches)
+	{
+		double[] scores = new double[to - from];
+		doMatchAll(n1, map2, candidates, from, to, threshold, scores);
+		for (int k = 0; k < scores.length; k++)
+		{
+			matches[k] = scores[k] >= threshold;
+		}
+	}
+	
+	// Compares two values, with prepared profiles if the function supports them
+	private double compare(String s1, String s2)
+	{
+		if (prepared == null) return function.compare(s1, s2);
+		return prepared.comparePrepared(getProfile(s1), getProfile(s2));
+	}
+	
+	// Profile of a value, prepared once and kept for the next comparisons (thread-safe)
+	private Object getProfile(String value)
+	{
+		Object profile = profiles.get(value);
+		if (profile == null)
+		{
+			profile = prepared.prepare(value);
+			if (profiles.size() >= MAX_PROFILES) profiles.clear();
+			profiles.put(value, profile);
+		}
+		return profile;
+	}
+	
 	public String getAttribute()
     {
         return attribute;
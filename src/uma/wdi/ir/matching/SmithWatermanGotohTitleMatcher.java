@@ -30,4 +30,9 @@ public class SmithWatermanGotohTitleMatcher extends SimpleMatcher
 	public SmithWatermanGotohTitleMatcher() {
 		super("title", new SmithWatermanGotohSimilarityFunction(),0.93);
 	}
+	
+	// library: compute the scores with the library implementation instead of the faster one in this project
+	public SmithWatermanGotohTitleMatcher(boolean library) {
+		super("title", new SmithWatermanGotohSimilarityFunction(library),0.93);
+	}
 }
@@ -41,6 +41,8 @@ public class TitleDateMatcher extends CompoundMatcher
 		weights.add(w2);
 		
 		setParameters(matchers,weights,0.5);
+		// both return scores in [0,1] (0 for a missing date); the title, which has the higher weight, is evaluated first
+		setShortCircuit(true);
 	}
 
 }
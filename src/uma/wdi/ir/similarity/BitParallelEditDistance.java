@@ -0,0 +1,187 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/* Levenshtein distance with Myers' bit-vector algorithm (in the formulation of Hyyro):
+ * one column of the edit matrix is kept as bit vectors of its vertical +1/-1 differences,
+ * so a pattern of up to 64 characters costs a few word operations per character of the text.
+ * Longer patterns are split into blocks of 64 characters, the horizontal difference is carried
+ * from block to block. Characters are compared exactly (lowercase them beforehand for a 
+ * case-insensitive distance).
+ * Not thread-safe: one instance per thread (see LevensteinSimilarityFunction).
+ * */
+
+package uma.wdi.ir.similarity;
+
+import java.util.Arrays;
+
+public class BitParallelEditDistance 
+{
+	private static final int WORD = 64;
+	private static final long HIGH_BIT = 1L << (WORD - 1);
+	
+	private int m = 0;
+	private int words = 0;
+	
+	// characters of the pattern (open addressing, -1: free slot) -> their position in peq
+	private char[] tableChars = new char[128];
+	private int[] tableIndex = new int[128];
+	private int tableMask = 127;
+	private int distinct = 0;
+	// per distinct character: bit i of word w is set if pattern[64 * w + i] is the character
+	private long[] peq = new long[64];
+	// vertical differences of the current column (+1, -1), one word per block
+	private long[] pv = new long[1];
+	private long[] mv = new long[1];
+	
+	/* Sets the pattern, the string that is compared with the texts of the following distance calls
+	 * (the shorter of the two strings is the better choice) */
+	public void setPattern(char[] pattern, int length)
+	{
+		m = length;
+		words = (m + WORD - 1) / WORD;
+		
+		int capacity = Integer.highestOneBit(Math.max(64, 2 * m) - 1) << 1;
+		if (capacity > tableChars.length)
+		{
+			tableChars = new char[capacity];
+			tableIndex = new int[capacity];
+		}
+		tableMask = capacity - 1;
+		Arrays.fill(tableIndex, 0, capacity, -1);
+		distinct = 0;
+		if (peq.length < m * words) peq = new long[Math.max(m * words, 2 * peq.length)];
+		if (pv.length < words)
+		{
+			pv = new long[words];
+			mv = new long[words];
+		}
+		
+		for (int i = 0; i < m; i++)
+		{
+			int index = add(pattern[i]);
+			peq[index * words + i / WORD] |= 1L << (i % WORD);
+		}
+	}
+	
+	/* Edit distance between the pattern and text[0..n). Stops as soon as the distance is 
+	 * known to be larger than maxDistance and returns maxDistance + 1 then */
+	public int distance(char[] text, int n, int maxDistance)
+	{
+		if (m == 0) return Math.min(n, maxDistance + 1);
+		if (words == 1) return distanceOneWord(text, n, maxDistance);
+		return distanceBlocks(text, n, maxDistance);
+	}
+	
+	private int distanceOneWord(char[] text, int n, int maxDistance)
+	{
+		long last = 1L << (m - 1);
+		long pv = -1L;
+		long mv = 0;
+		int score = m;
+		for (int j = 0; j < n; j++)
+		{
+			int index = find(text[j]);
+			long eq = (index < 0) ? 0 : peq[index];
+			
+			long xv = eq | mv;
+			long xh = (((eq & pv) + pv) ^ pv) | eq;
+			long ph = mv | ~(xh | pv);
+			long mh = pv & xh;
+			if ((ph & last) != 0) score++;
+			else if ((mh & last) != 0) score--;
+			// row 0 of the edit matrix grows by one per column
+			ph = (ph << 1) | 1;
+			mh <<= 1;
+			pv = mh | ~(xv | ph);
+			mv = ph & xv;
+			
+			// each remaining column lowers the score by at most one
+			if (score - (n - j - 1) > maxDistance) return maxDistance + 1;
+		}
+		return score;
+	}
+	
+	private int distanceBlocks(char[] text, int n, int maxDistance)
+	{
+		Arrays.fill(pv, 0, words, -1L);
+		Arrays.fill(mv, 0, words, 0);
+		long last = 1L << ((m - 1) % WORD);
+		int score = m;
+		for (int j = 0; j < n; j++)
+		{
+			int index = find(text[j]);
+			int offset = index * words;
+			// horizontal difference entering the block from above: +1 for row 0
+			int carry = 1;
+			for (int b = 0; b < words; b++)
+			{
+				long eq = (index < 0) ? 0 : peq[offset + b];
+				long pvb = pv[b];
+				long mvb = mv[b];
+				
+				long xv = eq | mvb;
+				if (carry < 0) eq |= 1;
+				long xh = (((eq & pvb) + pvb) ^ pvb) | eq;
+				long ph = mvb | ~(xh | pvb);
+				long mh = pvb & xh;
+				long high = (b == words - 1) ? last : HIGH_BIT;
+				int out = ((ph & high) != 0) ? 1 : (((mh & high) != 0) ? -1 : 0);
+				ph <<= 1;
+				mh <<= 1;
+				if (carry < 0) mh |= 1;
+				else if (carry > 0) ph |= 1;
+				pv[b] = mh | ~(xv | ph);
+				mv[b] = ph & xv;
+				carry = out;
+			}
+			score += carry;
+			
+			if (score - (n - j - 1) > maxDistance) return maxDistance + 1;
+		}
+		return score;
+	}
+	
+	// Position of a pattern character in peq, -1 if the character is not in the pattern
+	private int find(char c)
+	{
+		int slot = hash(c) & tableMask;
+		while (tableIndex[slot] >= 0)
+		{
+			if (tableChars[slot] == c) return tableIndex[slot];
+			slot = (slot + 1) & tableMask;
+		}
+		return -1;
+	}
+	
+	// Position of a pattern character in peq, added with empty masks if it is new
+	private int add(char c)
+	{
+		int slot = hash(c) & tableMask;
+		while (tableIndex[slot] >= 0)
+		{
+			if (tableChars[slot] == c) return tableIndex[slot];
+			slot = (slot + 1) & tableMask;
+		}
+		int index = distinct++;
+		tableChars[slot] = c;
+		tableIndex[slot] = index;
+		Arrays.fill(peq, index * words, (index + 1) * words, 0);
+		return index;
+	}
+	
+	private static int hash(char c)
+	{
+		return (c * 0x9E3779B1) >>> 16;
+	}
+}
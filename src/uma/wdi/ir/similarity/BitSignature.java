@@ -0,0 +1,59 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package uma.wdi.ir.similarity;
+
+/**
+ * Fixed-width bit vector of a value (a Bloom filter of its hashed q-grams, see BitSignatureSimilarityFunction), 
+ * so that the bits two values share are counted with Long.bitCount over the words
+ *
+ */
+public class BitSignature {
+	
+	private long[] words;
+	private int cardinality;
+	
+	public BitSignature(long[] words)
+	{
+		this.words = words;
+		for (long word : words)
+		{
+			cardinality += Long.bitCount(word);
+		}
+	}
+	
+	// number of bits set
+	public int size()
+	{
+		return cardinality;
+	}
+	
+	public long[] getWords()
+	{
+		return words;
+	}
+	
+	// Number of bits set in both signatures (of the same width)
+	public int common(BitSignature other)
+	{
+		long[] w1 = words;
+		long[] w2 = other.words;
+		int common = 0;
+		for (int i = 0; i < w1.length; i++)
+		{
+			common += Long.bitCount(w1[i] & w2[i]);
+		}
+		return common;
+	}
+}
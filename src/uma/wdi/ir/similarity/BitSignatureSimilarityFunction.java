@@ -0,0 +1,135 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package uma.wdi.ir.similarity;
+
+public class BitSignatureSimilarityFunction implements PreparedSimilarityFunction<BitSignature> 
+{
+	/**
+	 * Compares two strings approximately, uses Dice or Jaccard similarity of their q-gram sets, estimated on 
+	 * fixed-width bit signatures (every q-gram sets a few hashed bits) prepared once per value. 
+	 * Hash collisions make the estimate a bit higher than the exact q-gram similarity, more so for narrow 
+	 * signatures and long values. Meant as a fast first pass before exact measures (see PrefilteredSimilarityFunction).
+	 *
+	 */
+	
+	public static final int DEFAULT_Q = 2;
+	public static final int DEFAULT_BITS = 256;
+	public static final int DEFAULT_HASHES = 1;
+	
+	public enum Measure { DICE, JACCARD }
+	
+	private Measure measure;
+	private int q;
+	private int bits;
+	private int hashes;
+	
+	public BitSignatureSimilarityFunction()
+	{
+		this(Measure.DICE);
+	}
+	
+	public BitSignatureSimilarityFunction(Measure measure)
+	{
+		this(measure, DEFAULT_Q, DEFAULT_BITS, DEFAULT_HASHES);
+	}
+	
+	/* q: length of the q-grams, bits: width of the signatures (a multiple of 64), 
+	 * hashes: number of bits set per q-gram */
+	public BitSignatureSimilarityFunction(Measure measure, int q, int bits, int hashes)
+	{
+		if (q < 1) throw new IllegalArgumentException("q has to be at least 1: " + q);
+		if (bits < 64 || bits % 64 != 0) throw new IllegalArgumentException("bits has to be a multiple of 64: " + bits);
+		if (hashes < 1) throw new IllegalArgumentException("hashes has to be at least 1: " + hashes);
+		this.measure = measure;
+		this.q = q;
+		this.bits = bits;
+		this.hashes = hashes;
+	}
+
+	@Override
+	public double compare(String s1, String s2) 
+	{
+		return comparePrepared(prepare(s1), prepare(s2));
+	}
+	
+	/* Signature of the q-grams of the value, case-insensitive and padded with q-1 sentinels on both sides 
+	 * as in QGramIndex (n+q-1 q-grams for a value of length n) */
+	@Override
+	public BitSignature prepare(String s) 
+	{
+		long[] words = new long[bits / 64];
+		int n = s.length();
+		for (int g = 0; g < n + q - 1; g++)
+		{
+			long h = 0;
+			for (int p = g - q + 1; p <= g; p++)
+			{
+				h = h * 31 + ((p >= 0 && p < n) ? Character.toLowerCase(s.charAt(p)) + 1 : 0);
+			}
+			h = mix(h);
+			// bits of the q-gram: h1 + k * h2 (double hashing)
+			int h1 = (int) h;
+			int h2 = (int) (h >>> 32) | 1;
+			for (int k = 0; k < hashes; k++)
+			{
+				int bit = (int) (((h1 + k * h2) & 0xFFFFFFFFL) % bits);
+				words[bit >>> 6] |= 1L << bit;
+			}
+		}
+		return new BitSignature(words);
+	}
+	
+	// 0 if neither value has a q-gram
+	@Override
+	public double comparePrepared(BitSignature p1, BitSignature p2) 
+	{
+		int common = p1.common(p2);
+		int total = p1.size() + p2.size();
+		if (total == 0) return 0;
+		if (measure == Measure.DICE) return 2.0 * common / total;
+		return (double) common / (total - common);
+	}
+	
+	// finaliser of MurmurHash3, spreads the q-gram over all bits
+	private static long mix(long h)
+	{
+		h ^= h >>> 33;
+		h *= 0xff51afd7ed558ccdL;
+		h ^= h >>> 33;
+		h *= 0xc4ceb9fe1a85ec53L;
+		h ^= h >>> 33;
+		return h;
+	}
+	
+	public Measure getMeasure()
+	{
+		return measure;
+	}
+	
+	public int getQ()
+	{
+		return q;
+	}
+	
+	public int getBits()
+	{
+		return bits;
+	}
+	
+	public int getHashes()
+	{
+		return hashes;
+	}
+}
@@ -0,0 +1,254 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package uma.wdi.ir.similarity;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class CachingSimilarityFunction implements SimilarityFunction 
+{
+	/**
+	 * Wraps a similarity function and keeps the scores of the value pairs compared so far, for attributes 
+	 * with many repeated values (platforms, common titles, re-releases). 
+	 * Least recently used pairs are dropped when the estimated memory of the cache exceeds maxBytes.
+	 * Pairs are keyed by the values as given, not normalised (case, whitespace): the wrapped function may tell 
+	 * such variants apart, so they are cached as different pairs. Only the order of the values is canonical 
+	 * if the function is symmetric. A pair larger than a stripe (maxBytes / 16) is not cached.
+	 * Thread-safe: the cache is split into stripes with a lock each. The counters show whether caching 
+	 * pays off for an attribute (hit rate) and whether the cache is too small (evictions).
+	 * Example: new SimpleMatcher("platform", new CachingSimilarityFunction(new JaroWinklerSimilarityFunction(), true), 0.9)
+	 *
+	 */
+	
+	public static final long DEFAULT_MAX_BYTES = 64L << 20;
+	
+	private static final int STRIPES = 16;
+	// estimated bytes of an entry besides the characters of the values: key, map entry, boxed score
+	private static final int ENTRY_OVERHEAD = 128;
+	
+	private SimilarityFunction function;
+	private boolean symmetric;
+	private long maxBytes;
+	private Stripe[] stripes = new Stripe[STRIPES];
+	
+	private AtomicLong hits = new AtomicLong();
+	private AtomicLong misses = new AtomicLong();
+	private AtomicLong evictions = new AtomicLong();
+	
+	// symmetric: compare(s1, s2) == compare(s2, s1), then both orders share an entry
+	public CachingSimilarityFunction(SimilarityFunction function, boolean symmetric)
+	{
+		this(function, symmetric, DEFAULT_MAX_BYTES);
+	}
+	
+	public CachingSimilarityFunction(SimilarityFunction function, boolean symmetric, long maxBytes)
+	{
+		this.function = function;
+		this.symmetric = symmetric;
+		this.maxBytes = maxBytes;
+		for (int i = 0; i < STRIPES; i++)
+		{
+			stripes[i] = new Stripe(maxBytes / STRIPES);
+		}
+	}
+
+	@Override
+	public double compare(String s1, String s2) 
+	{
+		// one order of the pair as key
+		Key key = (symmetric && isAfter(s1, s2)) ? new Key(s2, s1) : new Key(s1, s2);
+		Stripe stripe = stripes[(key.hash ^ (key.hash >>> 16)) & (STRIPES - 1)];
+		
+		Double cached;
+		synchronized (stripe)
+		{
+			cached = stripe.get(key);
+		}
+		if (cached != null)
+		{
+			hits.incrementAndGet();
+			return cached;
+		}
+		
+		// computed outside the lock, threads missing the same pair at once both compute it
+		misses.incrementAndGet();
+		double score = function.compare(s1, s2);
+		synchronized (stripe)
+		{
+			evictions.addAndGet(stripe.add(key, score));
+		}
+		return score;
+	}
+	
+	// Print the counters into console
+	public void printStatistics()
+	{
+		System.out.println("Cache hits = " + hits.get() + ", misses = " + misses.get() + ", hit rate = " + getHitRate());
+		System.out.println("Cache entries = " + size() + ", bytes = " + getBytes() + " of " + maxBytes + ", evictions = " + evictions.get());
+	}
+	
+	// Empties the cache and resets the counters
+	public void clear()
+	{
+		for (Stripe stripe : stripes)
+		{
+			synchronized (stripe)
+			{
+				stripe.clear();
+			}
+		}
+		hits.set(0);
+		misses.set(0);
+		evictions.set(0);
+	}
+	
+	// Getters
+	public SimilarityFunction getFunction() {
+		return function;
+	}
+	
+	public long getHits() {
+		return hits.get();
+	}
+	
+	public long getMisses() {
+		return misses.get();
+	}
+	
+	public long getEvictions() {
+		return evictions.get();
+	}
+	
+	// Share of the comparisons answered from the cache, 0 if there were none
+	public double getHitRate() {
+		long h = hits.get();
+		long total = h + misses.get();
+		return (total == 0) ? 0 : (double) h / total;
+	}
+	
+	// Number of cached pairs
+	public int size() {
+		int size = 0;
+		for (Stripe stripe : stripes)
+		{
+			synchronized (stripe)
+			{
+				size += stripe.size();
+			}
+		}
+		return size;
+	}
+	
+	// Estimated memory of the cached pairs
+	public long getBytes() {
+		long bytes = 0;
+		for (Stripe stripe : stripes)
+		{
+			synchronized (stripe)
+			{
+				bytes += stripe.bytes;
+			}
+		}
+		return bytes;
+	}
+	
+	// Order of the values of a symmetric pair, by hash first (cheap, the hash of a String is cached)
+	private static boolean isAfter(String s1, String s2)
+	{
+		int h1 = s1.hashCode();
+		int h2 = s2.hashCode();
+		if (h1 != h2) return h1 > h2;
+		return s1.compareTo(s2) > 0;
+	}
+	
+	private static long weight(Key key)
+	{
+		return ENTRY_OVERHEAD + 2L * (key.s1.length() + key.s2.length());
+	}
+	
+	/*
+	 * Ordered pair of values
+	 */
+	private static class Key
+	{
+		final String s1;
+		final String s2;
+		final int hash;
+		
+		Key(String s1, String s2)
+		{
+			this.s1 = s1;
+			this.s2 = s2;
+			this.hash = 31 * s1.hashCode() + s2.hashCode();
+		}
+		
+		@Override
+		public int hashCode()
+		{
+			return hash;
+		}
+		
+		@Override
+		public boolean equals(Object o)
+		{
+			if (!(o instanceof Key)) return false;
+			Key other = (Key) o;
+			return hash == other.hash && s1.equals(other.s1) && s2.equals(other.s2);
+		}
+	}
+	
+	/*
+	 * Part of the cache, in access order (least recently used first); callers synchronize on it
+	 */
+	private static class Stripe extends LinkedHashMap<Key, Double>
+	{
+		private static final long serialVersionUID = 1L;
+		
+		final long maxBytes;
+		long bytes = 0;
+		
+		Stripe(long maxBytes)
+		{
+			super(16, 0.75f, true);
+			this.maxBytes = maxBytes;
+		}
+		
+		// Adds an entry, returns the number of entries evicted to stay within maxBytes (entries larger than maxBytes are not added)
+		int add(Key key, double score)
+		{
+			if (weight(key) > maxBytes) return 0;
+			if (super.put(key, score) == null) bytes += weight(key);
+			int evicted = 0;
+			Iterator<Map.Entry<Key, Double>> eldest = entrySet().iterator();
+			while (bytes > maxBytes && eldest.hasNext())
+			{
+				Key k = eldest.next().getKey();
+				eldest.remove();
+				bytes -= weight(k);
+				evicted++;
+			}
+			return evicted;
+		}
+		
+		@Override
+		public void clear()
+		{
+			super.clear();
+			bytes = 0;
+		}
+	}
+}
@@ -0,0 +1,265 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/* Document frequencies of the tokens of one attribute, counted once over the values of one or more
+ * NodeMaps (every value is a document), for the TF-IDF weights of TFIDFVector.
+ * Same tokens and weights as TFIDF/SoftTFIDF from secondstring trained on the same values. */
+/* File layout (big-endian): magic, version, attribute, document count, token count, tokens (UTF) and
+ * their document frequencies, in id order
+ * */
+
+package uma.wdi.ir.similarity;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import uma.wdi.ir.IntList;
+import uma.wdi.ir.NodeMap;
+
+public class CorpusStatistics
+{
+	private static final int MAGIC = 0x54464446; // "TFDF"
+	private static final int VERSION = 1;
+
+	private String attribute;
+	private int documents;
+	// document frequencies of the corpus tokens, by id
+	private int[] frequencies;
+	// token -> id; the corpus tokens have the ids 0..frequencies.length-1, tokens seen later
+	// (values outside the corpus) get the next free ids, their document frequency is 1 as in secondstring
+	private ConcurrentMap<String, Integer> ids = new ConcurrentHashMap<>();
+	private int nextId;
+
+	private CorpusStatistics(String attribute, int documents, List<String> tokens, int[] frequencies)
+	{
+		this.attribute = attribute;
+		this.documents = documents;
+		this.frequencies = frequencies;
+		for (int i = 0; i < tokens.size(); i++)
+		{
+			ids.put(tokens.get(i), i);
+		}
+		nextId = tokens.size();
+	}
+
+	// Counts the document frequencies of the tokens of the attribute values of all maps
+	public static CorpusStatistics build(String attribute, NodeMap... maps)
+	{
+		Map<String, Integer> index = new HashMap<>();
+		List<String> tokens = new ArrayList<>();
+		IntList frequencies = new IntList();
+		int documents = 0;
+		Set<String> distinct = new HashSet<>();
+		for (NodeMap map : maps)
+		{
+			for (int i = 0; i < map.size(); i++)
+			{
+				for (String value : map.getNode(i).getAttribute(attribute))
+				{
+					documents++;
+					distinct.clear();
+					distinct.addAll(tokenize(value));
+					for (String token : distinct)
+					{
+						Integer id = index.get(token);
+						if (id == null)
+						{
+							index.put(token, tokens.size());
+							tokens.add(token);
+							frequencies.add(1);
+						}
+						else frequencies.set(id, frequencies.get(id) + 1);
+					}
+				}
+			}
+		}
+		return new CorpusStatistics(attribute, documents, tokens, frequencies.toArray());
+	}
+
+	// Writes the statistics of the corpus tokens to file
+	public void save(String file) throws IOException
+	{
+		String[] tokens = new String[frequencies.length];
+		for (Map.Entry<String, Integer> entry : ids.entrySet())
+		{
+			if (entry.getValue() < tokens.length) tokens[entry.getValue()] = entry.getKey();
+		}
+
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16)))
+		{
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeUTF(attribute);
+			out.writeInt(documents);
+			out.writeInt(tokens.length);
+			for (int i = 0; i < tokens.length; i++)
+			{
+				out.writeUTF(tokens[i]);
+				out.writeInt(frequencies[i]);
+			}
+		}
+	}
+
+	// Reads statistics written by save()
+	public static CorpusStatistics load(String file) throws IOException
+	{
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 1 << 16)))
+		{
+			if (in.readInt() != MAGIC || in.readInt() != VERSION)
+			{
+				throw new IOException("file " + file + " is not a corpus statistics file");
+			}
+			String attribute = in.readUTF();
+			int documents = in.readInt();
+			int count = in.readInt();
+			List<String> tokens = new ArrayList<>(count);
+			int[] frequencies = new int[count];
+			for (int i = 0; i < count; i++)
+			{
+				tokens.add(in.readUTF());
+				frequencies[i] = in.readInt();
+			}
+			return new CorpusStatistics(attribute, documents, tokens, frequencies);
+		}
+	}
+
+	/* Tokens of a value in order, duplicates included, as secondstring's SimpleTokenizer.DEFAULT_TOKENIZER:
+	 * runs of letters and runs of digits, lower case; whitespace and punctuation are dropped */
+	public static List<String> tokenize(String s)
+	{
+		List<String> tokens = new ArrayList<String>();
+		int i = 0;
+		while (i < s.length())
+		{
+			char c = s.charAt(i);
+			int start = i;
+			if (Character.isLetter(c))
+			{
+				while (i < s.length() && Character.isLetter(s.charAt(i))) i++;
+				tokens.add(s.substring(start, i).toLowerCase());
+			}
+			else if (Character.isDigit(c))
+			{
+				while (i < s.length() && Character.isDigit(s.charAt(i))) i++;
+				tokens.add(s.substring(start, i));
+			}
+			else i++;
+		}
+		return tokens;
+	}
+
+	/* Weighted vector of a value: weight log(tf + 1) * log(documents / df) for every distinct token,
+	 * normalised to length 1 (all weights 1 before normalising if the corpus is empty) */
+	public TFIDFVector vector(String s)
+	{
+		List<String> tokens = tokenize(s);
+		Map<String, Integer> counts = new HashMap<>();
+		for (String token : tokens)
+		{
+			Integer count = counts.get(token);
+			counts.put(token, count == null ? 1 : count + 1);
+		}
+
+		int n = counts.size();
+		long[] entries = new long[n];
+		String[] distinct = counts.keySet().toArray(new String[n]);
+		for (int k = 0; k < n; k++)
+		{
+			// id in the upper half, so that sorting orders by id
+			entries[k] = ((long) getId(distinct[k]) << 32) | k;
+		}
+		Arrays.sort(entries);
+
+		int[] vectorIds = new int[n];
+		double[] weights = new double[n];
+		String[] vectorTokens = new String[n];
+		double norm = 0;
+		for (int k = 0; k < n; k++)
+		{
+			int id = (int) (entries[k] >>> 32);
+			String token = distinct[(int) entries[k]];
+			double w = 1;
+			if (documents > 0)
+			{
+				double df = id < frequencies.length ? frequencies[id] : 1;
+				w = Math.log(counts.get(token) + 1) * Math.log(documents / df);
+			}
+			vectorIds[k] = id;
+			weights[k] = w;
+			vectorTokens[k] = token;
+			norm += w * w;
+		}
+		norm = Math.sqrt(norm);
+		for (int k = 0; k < n; k++)
+		{
+			weights[k] /= norm;
+		}
+		return new TFIDFVector(vectorIds, weights, vectorTokens);
+	}
+
+	// Id of a token, tokens outside the corpus get a new id
+	public int getId(String token)
+	{
+		Integer id = ids.get(token);
+		if (id != null) return id;
+		return addToken(token);
+	}
+
+	private synchronized int addToken(String token)
+	{
+		Integer id = ids.get(token);
+		if (id != null) return id;
+		int added = nextId++;
+		ids.put(token, added);
+		return added;
+	}
+
+	public String getAttribute()
+	{
+		return attribute;
+	}
+
+	// Number of documents (values) in the corpus
+	public int getDocumentCount()
+	{
+		return documents;
+	}
+
+	// Number of distinct tokens in the corpus
+	public int getTokenCount()
+	{
+		return frequencies.length;
+	}
+
+	// Document frequency of a token, 0 if it is not in the corpus
+	public int getDocumentFrequency(String token)
+	{
+		Integer id = ids.get(token);
+		return (id == null || id >= frequencies.length) ? 0 : frequencies[id];
+	}
+}
@@ -14,12 +14,10 @@
 
 package uma.wdi.ir.similarity;
 
-import uk.ac.shef.wit.simmetrics.similaritymetrics.CosineSimilarity;
-
-public class CosineSimilarityFunction implements SimilarityFunction 
+public class CosineSimilarityFunction implements SetSimilarityFunction 
 {
 	/**
-	 * Compares two strings, uses Cosine Similarity. 
+	 * Compares two strings, uses Cosine Similarity (same scores as CosineSimilarity from simmetrics, computed on token sets prepared once per value). 
 	 * @author Volha
 	 *
 	 */
@@ -27,8 +25,44 @@ public class CosineSimilarityFunction implements SimilarityFunction
 	@Override
 	public double compare(String s1, String s2) 
 	{
-		CosineSimilarity dist = new CosineSimilarity();
-		return dist.getSimilarity(s1,s2);
+		return comparePrepared(prepare(s1), prepare(s2));
+	}
+	
+	@Override
+	public TokenSetProfile prepare(String s) 
+	{
+		return new TokenSetProfile(s);
+	}
+	
+	@Override
+	public double comparePrepared(TokenSetProfile p1, TokenSetProfile p2) 
+	{
+		return score(p1.common(p2), p1.size(), p2.size());
+	}
+	
+	@Override
+	public double score(int common, int size1, int size2) 
+	{
+		// float arithmetic as in simmetrics: shared tokens / (sqrt(tokens1) * sqrt(tokens2))
+		float sim = (float) common / (float) (Math.pow((float) size1, 0.5) * Math.pow((float) size2, 0.5));
+		return sim;
+	}
+	
+	@Override
+	public double minOverlap(double size1, double size2, double threshold) 
+	{
+		return threshold * Math.sqrt(size1 * size2);
+	}
+	
+	@Override
+	public double minPartnerSize(double size, double threshold) 
+	{
+		return threshold * threshold * size;
 	}
 	
+	@Override
+	public double maxPartnerSize(double size, double threshold) 
+	{
+		return size / (threshold * threshold);
+	}
 }
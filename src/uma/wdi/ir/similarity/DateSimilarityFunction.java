@@ -14,13 +14,12 @@
 
 package uma.wdi.ir.similarity;
 
-import java.text.DateFormat;
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
-import java.util.Calendar;
+import uma.wdi.ir.TypedValues;
 
 /**
  * Compares two dates. The similarity is determined by min(date1,date2)/max(date1,date2). 
+ * Dates are "yyyy-mm-dd" (or "yyyy", "yyyy-mm"), compared as epoch days (see TypedValues.parseDate), 
+ * scores are in [0,1] (see compare(day1, day2) for dates on or before 1970-01-01).
  * @author Heiko
  *
  */
@@ -28,23 +27,25 @@ public class DateSimilarityFunction implements SimilarityFunction {
 
 	@Override
 	public double compare(String s1, String s2) {
-		try {
-			DateFormat formatter = new SimpleDateFormat("yyyy-mm-dd");
-			Calendar c1 = Calendar.getInstance();
-			c1.setTime(formatter.parse(s1));
-			
-			Calendar c2 = Calendar.getInstance();
-			c2.setTime(formatter.parse(s2));
-		
-			double time1 = c1.getTimeInMillis();
-			double time2 = c2.getTimeInMillis();
-			
-			return Math.min(time1, time2)/Math.max(time1,time2);
-			
-		} catch (ParseException e) {
+		int day1 = TypedValues.parseDate(s1);
+		int day2 = TypedValues.parseDate(s2);
+		if (day1 == TypedValues.NO_DATE || day2 == TypedValues.NO_DATE) {
 			System.out.println("wrong date format");
 			return 0;
 		}
+		return compare(day1, day2);
+	}
+	
+	/* Same as compare(s1, s2) for parsed dates (epoch days, e.g. ANode.getDate). 
+	 * min/max is only defined for dates after 1970-01-01; in general the score is 1 - |date1-date2| / max(|date1|,|date2|) 
+	 * (the same for dates after 1970-01-01), 1 for equal dates and at least 0 */
+	public double compare(int day1, int day2) {
+		double time1 = day1;
+		double time2 = day2;
+		
+		if (time1 > 0 && time2 > 0) return Math.min(time1, time2)/Math.max(time1,time2);
+		if (day1 == day2) return 1;
+		return Math.max(0, 1 - Math.abs(time1 - time2)/Math.max(Math.abs(time1), Math.abs(time2)));
 	}
 
 }
@@ -14,12 +14,10 @@
 
 package uma.wdi.ir.similarity;
 
-import uk.ac.shef.wit.simmetrics.similaritymetrics.DiceSimilarity;
-
-public class DiceSimilarityFunction implements SimilarityFunction 
+public class DiceSimilarityFunction implements SetSimilarityFunction 
 {
 	/**
-	 * Compares two strings, uses Jaccard Similarity. 
+	 * Compares two strings, uses Dice Similarity (same scores as DiceSimilarity from simmetrics, computed on token sets prepared once per value). 
 	 * @author Maxim
 	 *
 	 */
@@ -27,8 +25,44 @@ public class DiceSimilarityFunction implements SimilarityFunction
 	@Override
 	public double compare(String s1, String s2) 
 	{
-		DiceSimilarity dist = new DiceSimilarity();
-		return dist.getSimilarity(s1,s2);
+		return comparePrepared(prepare(s1), prepare(s2));
+	}
+	
+	@Override
+	public TokenSetProfile prepare(String s) 
+	{
+		return new TokenSetProfile(s);
+	}
+	
+	@Override
+	public double comparePrepared(TokenSetProfile p1, TokenSetProfile p2) 
+	{
+		return score(p1.common(p2), p1.size(), p2.size());
+	}
+	
+	@Override
+	public double score(int common, int size1, int size2) 
+	{
+		// float arithmetic as in simmetrics: 2 * shared tokens / (tokens1 + tokens2)
+		float sim = 2.0f * (float) common / (float) (size1 + size2);
+		return sim;
+	}
+	
+	@Override
+	public double minOverlap(double size1, double size2, double threshold) 
+	{
+		return threshold * (size1 + size2) / 2;
+	}
+	
+	@Override
+	public double minPartnerSize(double size, double threshold) 
+	{
+		return threshold * size / (2 - threshold);
 	}
 	
+	@Override
+	public double maxPartnerSize(double size, double threshold) 
+	{
+		return (2 - threshold) * size / threshold;
+	}
 }
@@ -14,12 +14,10 @@
 
 package uma.wdi.ir.similarity;
 
-import uk.ac.shef.wit.simmetrics.similaritymetrics.JaccardSimilarity;
-
-public class JaccardSimilarityFunction implements SimilarityFunction 
+public class JaccardSimilarityFunction implements SetSimilarityFunction 
 {
 	/**
-	 * Compares two strings, uses Jaccard Similarity. 
+	 * Compares two strings, uses Jaccard Similarity (same scores as JaccardSimilarity from simmetrics, computed on token sets prepared once per value). 
 	 * @author Maxim
 	 *
 	 */
@@ -27,8 +25,44 @@ public class JaccardSimilarityFunction implements SimilarityFunction
 	@Override
 	public double compare(String s1, String s2) 
 	{
-		JaccardSimilarity dist = new JaccardSimilarity();
-		return dist.getSimilarity(s1,s2);
+		return comparePrepared(prepare(s1), prepare(s2));
+	}
+	
+	@Override
+	public TokenSetProfile prepare(String s) 
+	{
+		return new TokenSetProfile(s);
+	}
+	
+	@Override
+	public double comparePrepared(TokenSetProfile p1, TokenSetProfile p2) 
+	{
+		return score(p1.common(p2), p1.size(), p2.size());
+	}
+	
+	@Override
+	public double score(int common, int size1, int size2) 
+	{
+		// float arithmetic as in simmetrics: shared tokens / all distinct tokens
+		float sim = (float) common / (float) (size1 + size2 - common);
+		return sim;
+	}
+	
+	@Override
+	public double minOverlap(double size1, double size2, double threshold) 
+	{
+		return threshold / (1 + threshold) * (size1 + size2);
+	}
+	
+	@Override
+	public double minPartnerSize(double size, double threshold) 
+	{
+		return threshold * size;
 	}
 	
+	@Override
+	public double maxPartnerSize(double size, double threshold) 
+	{
+		return size / threshold;
+	}
 }
@@ -0,0 +1,35 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package uma.wdi.ir.similarity;
+
+public class LengthRatioSimilarityFunction implements SimilarityFunction 
+{
+	/**
+	 * Compares the lengths of two strings: length of the shorter / length of the longer (1 if both are empty). 
+	 * Cheap filter before an expensive measure (see CascadeMatcher): values of very different lengths 
+	 * rarely reach a high edit or alignment similarity.
+	 *
+	 */
+
+	@Override
+	public double compare(String s1, String s2) 
+	{
+		int length1 = s1.trim().length();
+		int length2 = s2.trim().length();
+		if (length1 == 0 && length2 == 0) return 1.0;
+		return (double) Math.min(length1, length2) / Math.max(length1, length2);
+	}
+	
+}
@@ -14,20 +14,103 @@
 
 package uma.wdi.ir.similarity;
 
-import com.wcohen.ss.Levenstein;
-
-public class LevensteinSimilarityFunction implements SimilarityFunction 
+public class LevensteinSimilarityFunction implements ThresholdSimilarityFunction 
 {
 	/**
-	 * Compares two strings, uses Levenshtein edit distance from the SecodnString library. 
+	 * Compares two strings, uses Levenshtein edit distance (same scores as Levenstein from the SecondString library:
+	 * case-insensitive, 1 - distance / length of the longer string). 
+	 * The distance is computed bit-parallel (see BitParallelEditDistance). With a minimum similarity, 
+	 * pairs whose lengths differ too much are not compared at all, and the computation stops as soon 
+	 * as the minimum cannot be reached anymore.
 	 * @author Volha
 	 *
 	 */
+	
+	// per thread, no allocation per comparison
+	private static final ThreadLocal<Buffers> buffers = new ThreadLocal<Buffers>() 
+	{
+		@Override
+		protected Buffers initialValue() 
+		{
+			return new Buffers();
+		}
+	};
 
 	@Override
 	public double compare(String s1, String s2) 
 	{
-		Levenstein dist = new Levenstein();
-		return 1-Math.abs(dist.score(s1,s2)/Math.max(s1.length(), s2.length()));
+		return compare(s1, s2, Double.NEGATIVE_INFINITY);
+	}
+	
+	@Override
+	public double compare(String s1, String s2, double minSimilarity) 
+	{
+		int n = s1.length();
+		int m = s2.length();
+		int max = Math.max(n, m);
+		// distance to an empty string is the length of the other (both empty: NaN, as in SecondString)
+		if (n == 0 || m == 0) return similarity(max, max);
+		
+		// largest distance with a similarity >= minSimilarity, -1 if there is none
+		int k = maxDistance(max, minSimilarity);
+		// below the minimum: return the similarity at the smallest distance that is still possible
+		int bound = Math.max(k + 1, Math.abs(n - m));
+		// the distance is at least the difference of the lengths
+		if (Math.abs(n - m) > k) return similarity(bound, max);
+		
+		Buffers b = buffers.get();
+		b.ensureCapacity(n, m);
+		char[] a1 = b.chars1;
+		char[] a2 = b.chars2;
+		for (int i = 0; i < n; i++) a1[i] = Character.toLowerCase(s1.charAt(i));
+		for (int j = 0; j < m; j++) a2[j] = Character.toLowerCase(s2.charAt(j));
+		
+		// the shorter string as pattern: one machine word for up to 64 characters
+		int d;
+		if (n <= m)
+		{
+			b.distance.setPattern(a1, n);
+			d = b.distance.distance(a2, m, k);
+		}
+		else
+		{
+			b.distance.setPattern(a2, m);
+			d = b.distance.distance(a1, n, k);
+		}
+		if (d > k) return similarity(bound, max);
+		return similarity(d, max);
+	}
+	
+	// Largest distance d with similarity(d, max) >= minSimilarity, -1 if there is none (max: length of the longer string)
+	public static int maxDistance(int max, double minSimilarity)
+	{
+		double estimate = Math.floor((1 - minSimilarity) * max);
+		int k = (int) Math.max(-1, Math.min(max, estimate));
+		// correct rounding errors of the estimate, using the same expression as the score
+		while (k < max && similarity(k + 1, max) >= minSimilarity) k++;
+		while (k >= 0 && similarity(k, max) < minSimilarity) k--;
+		return k;
+	}
+	
+	// Score as computed from the SecondString score (-distance)
+	private static double similarity(int distance, int max)
+	{
+		return 1-Math.abs(-(double) distance/max);
+	}
+	
+	/*
+	 * Lowercased strings, grown as needed, and the distance engine
+	 */
+	private static class Buffers
+	{
+		char[] chars1 = new char[64];
+		char[] chars2 = new char[64];
+		BitParallelEditDistance distance = new BitParallelEditDistance();
+		
+		void ensureCapacity(int n, int m)
+		{
+			if (n > chars1.length) chars1 = new char[Math.max(n, 2 * chars1.length)];
+			if (m > chars2.length) chars2 = new char[Math.max(m, 2 * chars2.length)];
+		}
 	}
 }
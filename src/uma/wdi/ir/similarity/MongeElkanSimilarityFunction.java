@@ -14,21 +14,48 @@
 
 package uma.wdi.ir.similarity;
 
-import uk.ac.shef.wit.simmetrics.similaritymetrics.MongeElkan;
+import java.util.List;
 
-public class MongeElkanSimilarityFunction implements SimilarityFunction 
+public class MongeElkanSimilarityFunction implements PreparedSimilarityFunction<String[]> 
 {
 	/**
-	 * Compares two strings, uses Jaccard Similarity. 
+	 * Compares two strings, uses Monge-Elkan Similarity (same scores as MongeElkan from simmetrics: for each token 
+	 * of s1 the best Smith-Waterman-Gotoh score with a token of s2, averaged; tokens are prepared once per value,
+	 * token scores are computed by SmithWatermanGotohAlignment). 
 	 * @author Maxim
 	 *
 	 */
-
+	
 	@Override
 	public double compare(String s1, String s2) 
 	{
-		MongeElkan dist = new MongeElkan();
-		return dist.getSimilarity(s1,s2);
+		return comparePrepared(prepare(s1), prepare(s2));
+	}
+	
+	// Whitespace tokens in order, duplicates included
+	@Override
+	public String[] prepare(String s) 
+	{
+		List<String> tokens = TokenSetProfile.tokenize(s);
+		return tokens.toArray(new String[tokens.size()]);
+	}
+	
+	@Override
+	public double comparePrepared(String[] p1, String[] p2) 
+	{
+		// float arithmetic as in simmetrics
+		float sum = 0.0f;
+		for (String t1 : p1)
+		{
+			float best = 0.0f;
+			for (String t2 : p2)
+			{
+				float sim = SmithWatermanGotohAlignment.similarity(t1, t2);
+				if (sim > best) best = sim;
+			}
+			sum += best;
+		}
+		return sum / (float) p1.length;
 	}
 	
 }
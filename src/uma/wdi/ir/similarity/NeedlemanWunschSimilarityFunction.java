@@ -16,19 +16,44 @@ package uma.wdi.ir.similarity;
 
 import com.wcohen.ss.NeedlemanWunsch;
 
-public class NeedlemanWunschSimilarityFunction implements SimilarityFunction 
+public class NeedlemanWunschSimilarityFunction implements ThresholdSimilarityFunction 
 {
 	/**
 	 * Compares two strings, uses Needleman-Wunsch similarity from the SecondString library. 
+	 * With its default costs (case-insensitive, mismatch and gap 1) the score is minus the Levenshtein distance,
+	 * so it is computed bit-parallel by LevensteinSimilarityFunction, or by SecondString itself if library is true.
 	 * @author Maxim
 	 *
 	 */
+	
+	private boolean library;
+	private LevensteinSimilarityFunction distance = new LevensteinSimilarityFunction();
+	
+	public NeedlemanWunschSimilarityFunction()
+	{
+		this(false);
+	}
+	
+	public NeedlemanWunschSimilarityFunction(boolean library)
+	{
+		this.library = library;
+	}
 
 	@Override
 	public double compare(String s1, String s2) 
 	{
-		NeedlemanWunsch dist = new NeedlemanWunsch();
-		dist.score(s1, s2);
-		return 1-Math.abs(dist.score(s1,s2)/Math.max(s1.length(), s2.length()));
+		if (library)
+		{
+			NeedlemanWunsch dist = new NeedlemanWunsch();
+			return 1-Math.abs(dist.score(s1,s2)/Math.max(s1.length(), s2.length()));
+		}
+		return distance.compare(s1, s2);
 	}	
+	
+	@Override
+	public double compare(String s1, String s2, double minSimilarity) 
+	{
+		if (library) return compare(s1, s2);
+		return distance.compare(s1, s2, minSimilarity);
+	}
 }
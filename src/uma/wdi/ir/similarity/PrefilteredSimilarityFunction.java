@@ -0,0 +1,114 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package uma.wdi.ir.similarity;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Similarity function that compares the bit signatures of two values first (see BitSignatureSimilarityFunction) 
+ * and computes the expensive similarity only if the signature similarity reaches minFilterScore, 
+ * otherwise the score is 0. Approximate: pairs the filter rejects are lost even if they would match.
+ *
+ */
+public class PrefilteredSimilarityFunction implements PreparedSimilarityFunction<PrefilteredSimilarityFunction.Profile> {
+	
+	private BitSignatureSimilarityFunction filter;
+	private double minFilterScore;
+	private SimilarityFunction function;
+	// the function, if it works on prepared values (null otherwise)
+	private PreparedSimilarityFunction<Object> prepared;
+	
+	private AtomicLong rejected = new AtomicLong();
+	private AtomicLong passed = new AtomicLong();
+	
+	@SuppressWarnings("unchecked")
+	public PrefilteredSimilarityFunction(BitSignatureSimilarityFunction filter, double minFilterScore, SimilarityFunction function)
+	{
+		this.filter = filter;
+		this.minFilterScore = minFilterScore;
+		this.function = function;
+		if (function instanceof PreparedSimilarityFunction) prepared = (PreparedSimilarityFunction<Object>) function;
+	}
+	
+	@Override
+	public double compare(String s1, String s2) 
+	{
+		return comparePrepared(prepare(s1), prepare(s2));
+	}
+	
+	@Override
+	public Profile prepare(String s) 
+	{
+		return new Profile(s, filter.prepare(s), prepared == null ? null : prepared.prepare(s));
+	}
+	
+	@Override
+	public double comparePrepared(Profile p1, Profile p2) 
+	{
+		if (filter.comparePrepared(p1.signature, p2.signature) < minFilterScore)
+		{
+			rejected.incrementAndGet();
+			return 0;
+		}
+		passed.incrementAndGet();
+		if (prepared == null) return function.compare(p1.value, p2.value);
+		return prepared.comparePrepared(p1.profile, p2.profile);
+	}
+	
+	// Number of comparisons the filter rejected
+	public long getRejected()
+	{
+		return rejected.get();
+	}
+	
+	// Number of comparisons passed on to the function
+	public long getPassed()
+	{
+		return passed.get();
+	}
+	
+	public void printStatistics()
+	{
+		System.out.println("Prefilter comparisons = " + (rejected.get() + passed.get()) + ", rejected = " + rejected.get() 
+				+ ", passed = " + passed.get() + " (min. signature score " + minFilterScore + ")");
+	}
+	
+	public SimilarityFunction getFunction()
+	{
+		return function;
+	}
+	
+	/*
+	 * Value with its signature and the profile of the function (null if it does not prepare values)
+	 */
+	public static class Profile
+	{
+		private String value;
+		private BitSignature signature;
+		private Object profile;
+		
+		Profile(String value, BitSignature signature, Object profile)
+		{
+			this.value = value;
+			this.signature = signature;
+			this.profile = profile;
+		}
+		
+		public BitSignature getSignature()
+		{
+			return signature;
+		}
+	}
+}
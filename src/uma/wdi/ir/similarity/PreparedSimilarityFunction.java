@@ -0,0 +1,39 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package uma.wdi.ir.similarity;
+
+/**
+ * Similarity function that works on a profile of each value (e.g. its tokens), prepared once per value
+ * and compared with many others, instead of preparing both values on every comparison. 
+ * SimpleMatcher prepares the profiles of the attribute values automatically.
+ *
+ * @param <P> the profile
+ */
+public interface PreparedSimilarityFunction<P> extends SimilarityFunction {
+	/**
+	 * Prepare the profile of a value. Profiles are not changed by comparisons and can be shared between threads.
+	 * @param s
+	 * @return
+	 */
+	public P prepare(String s);
+	
+	/**
+	 * Compute the similarity score for two prepared values, the same as compare(s1, s2) for the original values.
+	 * @param p1
+	 * @param p2
+	 * @return
+	 */
+	public double comparePrepared(P p1, P p2);
+}
@@ -0,0 +1,47 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package uma.wdi.ir.similarity;
+
+/**
+ * Similarity of token sets that depends only on the sizes of the sets and their overlap 
+ * (Jaccard, Dice, Cosine). The bounds allow set-similarity joins to rule out pairs 
+ * without comparing them (see uma.wdi.ir.index.SetSimilarityJoin).
+ *
+ */
+public interface SetSimilarityFunction extends PreparedSimilarityFunction<TokenSetProfile> {
+	/**
+	 * Compute the similarity score of two token sets from their overlap, the same as comparePrepared
+	 * @param common number of tokens in both sets
+	 * @param size1 number of tokens of the first set
+	 * @param size2 number of tokens of the second set
+	 * @return
+	 */
+	public double score(int common, int size1, int size2);
+	
+	/**
+	 * Overlap two sets of the given sizes need for a similarity >= threshold
+	 */
+	public double minOverlap(double size1, double size2, double threshold);
+	
+	/**
+	 * Smallest size of a set with a similarity >= threshold to a set of the given size
+	 */
+	public double minPartnerSize(double size, double threshold);
+	
+	/**
+	 * Largest size of a set with a similarity >= threshold to a set of the given size
+	 */
+	public double maxPartnerSize(double size, double threshold);
+}
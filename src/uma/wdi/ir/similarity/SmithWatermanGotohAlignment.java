@@ -0,0 +1,149 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/* Smith-Waterman-Gotoh local alignment with the scores of SmithWatermanGotoh from simmetrics:
+ * identical characters 5, approximately matching characters 3 (same group of SubCost5_3_Minus3, e.g. 
+ * vowels, compared lowercased), otherwise -3; a gap of length k costs 4 + k (AffineGap5_1).
+ * simmetrics tries every gap length for every cell, O(n*m*(n+m)) time and an n*m float matrix. With affine 
+ * gap costs the best gap ending in a cell follows from the best gap ending in the cell before (Gotoh), so 
+ * here it is O(n*m) time with three rows of ints. All scores are small integers, so int arithmetic gives 
+ * the same float results. As in simmetrics, gaps do not start in the first row or column.
+ * Thread-safe, the rows are kept per thread.
+ * */
+
+package uma.wdi.ir.similarity;
+
+import java.util.Arrays;
+
+public class SmithWatermanGotohAlignment 
+{
+	private static final int MATCH = 5;
+	private static final int APPROXIMATE = 3;
+	private static final int MISMATCH = -3;
+	private static final int GAP_OPEN = 5;
+	private static final int GAP_EXTEND = 1;
+	
+	// lowercase character -> its group of approximately matching characters, -1: none
+	private static final byte[] GROUP = new byte[128];
+	static
+	{
+		String[] groups = {"dt", "gj", "lr", "mn", "bpv", "aeiou", ",."};
+		Arrays.fill(GROUP, (byte) -1);
+		for (int g = 0; g < groups.length; g++)
+		{
+			for (char c : groups[g].toCharArray()) GROUP[c] = (byte) g;
+		}
+	}
+	
+	// per thread, no allocation per comparison
+	private static final ThreadLocal<Buffers> buffers = new ThreadLocal<Buffers>() 
+	{
+		@Override
+		protected Buffers initialValue() 
+		{
+			return new Buffers();
+		}
+	};
+	
+	private SmithWatermanGotohAlignment()
+	{
+	}
+	
+	// Normalised score as SmithWatermanGotoh.getSimilarity: best local score / (5 * length of the shorter string)
+	public static float similarity(String s, String t)
+	{
+		int n = s.length();
+		int m = t.length();
+		// as in simmetrics, the maximum possible score is 0 then
+		if (n == 0 || m == 0) return 1.0f;
+		float max = (float) Math.min(n, m) * MATCH;
+		return score(s, t) / max;
+	}
+	
+	// Best local alignment score, as SmithWatermanGotoh.getUnNormalisedSimilarity for non-empty strings
+	public static int score(String s, String t)
+	{
+		int n = s.length();
+		int m = t.length();
+		Buffers b = buffers.get();
+		b.ensureCapacity(m);
+		int[] previous = b.previous;
+		int[] current = b.current;
+		// best score of a vertical gap ending in the cell of the column, for the current row
+		int[] vertical = b.vertical;
+		char[] tChars = b.chars;
+		byte[] tGroups = b.groups;
+		for (int j = 0; j < m; j++)
+		{
+			tChars[j] = t.charAt(j);
+			tGroups[j] = group(tChars[j]);
+		}
+		
+		int best = 0;
+		for (int i = 0; i < n; i++)
+		{
+			char c = s.charAt(i);
+			byte g = group(c);
+			// best score of a horizontal gap ending in the current cell
+			int horizontal = 0;
+			for (int j = 0; j < m; j++)
+			{
+				int cost = (c == tChars[j]) ? MATCH : (g >= 0 && g == tGroups[j]) ? APPROXIMATE : MISMATCH;
+				
+				// gaps start in row >= 1 and column >= 1; no gap is represented by 0, as the cell is >= 0 anyway
+				int up = (i <= 1) ? 0 : Math.max(vertical[j] - GAP_EXTEND, previous[j] - GAP_OPEN);
+				vertical[j] = up;
+				if (j >= 2) horizontal = Math.max(horizontal - GAP_EXTEND, current[j - 1] - GAP_OPEN);
+				
+				int diagonal = (i == 0 || j == 0) ? cost : previous[j - 1] + cost;
+				int d = Math.max(Math.max(0, diagonal), Math.max(up, horizontal));
+				current[j] = d;
+				if (d > best) best = d;
+			}
+			int[] swap = previous;
+			previous = current;
+			current = swap;
+		}
+		return best;
+	}
+	
+	private static byte group(char c)
+	{
+		char lower = Character.toLowerCase(c);
+		return (lower < GROUP.length) ? GROUP[lower] : -1;
+	}
+	
+	/*
+	 * Rows of the score matrix and the second string, grown as needed
+	 */
+	private static class Buffers
+	{
+		int[] previous = new int[64];
+		int[] current = new int[64];
+		int[] vertical = new int[64];
+		char[] chars = new char[64];
+		byte[] groups = new byte[64];
+		
+		void ensureCapacity(int m)
+		{
+			if (m <= previous.length) return;
+			int size = Math.max(m, 2 * previous.length);
+			previous = new int[size];
+			current = new int[size];
+			vertical = new int[size];
+			chars = new char[size];
+			groups = new byte[size];
+		}
+	}
+}
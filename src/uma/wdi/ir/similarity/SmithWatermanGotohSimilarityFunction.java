@@ -19,15 +19,32 @@ import uk.ac.shef.wit.simmetrics.similaritymetrics.SmithWatermanGotoh;
 public class SmithWatermanGotohSimilarityFunction implements SimilarityFunction 
 {
 	/**
-	 * Compares two strings, uses Jaccard Similarity. 
+	 * Compares two strings, uses Smith-Waterman-Gotoh similarity (same scores as SmithWatermanGotoh from simmetrics,
+	 * computed in O(n*m) by SmithWatermanGotohAlignment, or by simmetrics itself if library is true). 
 	 * @author Maxim
 	 *
 	 */
+	
+	private boolean library;
+	
+	public SmithWatermanGotohSimilarityFunction()
+	{
+		this(false);
+	}
+	
+	public SmithWatermanGotohSimilarityFunction(boolean library)
+	{
+		this.library = library;
+	}
 
 	@Override
 	public double compare(String s1, String s2) 
 	{
-		SmithWatermanGotoh dist = new SmithWatermanGotoh();
-		return dist.getSimilarity(s1,s2);
+		if (library)
+		{
+			SmithWatermanGotoh dist = new SmithWatermanGotoh();
+			return dist.getSimilarity(s1,s2);
+		}
+		return SmithWatermanGotohAlignment.similarity(s1, s2);
 	}
 }
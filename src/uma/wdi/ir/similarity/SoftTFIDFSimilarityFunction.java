@@ -0,0 +1,190 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package uma.wdi.ir.similarity;
+
+import java.util.Arrays;
+
+public class SoftTFIDFSimilarityFunction implements PreparedSimilarityFunction<TFIDFVector> 
+{
+	/**
+	 * Compares two strings, uses SoftTFIDF (same scores as SoftTFIDF from secondstring with Jaro-Winkler 
+	 * as token similarity, with the document frequencies counted once in CorpusStatistics): 
+	 * tokens are matched one to one, best weighted token similarities first, if their Jaro-Winkler 
+	 * similarity reaches the token threshold. 
+	 * The token similarity is computed here instead of with JaroWinkler from secondstring, same scores 
+	 * without its string wrappers and buffers (it was most of the time of a comparison). 
+	 *
+	 */
+	
+	public static final double DEFAULT_TOKEN_THRESHOLD = 0.9;
+	
+	private CorpusStatistics statistics;
+	private double tokenThreshold;
+	// Jaro similarity at least needed to reach the token threshold with the largest Winkler prefix bonus
+	private double minJaro;
+	
+	public SoftTFIDFSimilarityFunction(CorpusStatistics statistics)
+	{
+		this(statistics, DEFAULT_TOKEN_THRESHOLD);
+	}
+	
+	public SoftTFIDFSimilarityFunction(CorpusStatistics statistics, double tokenThreshold)
+	{
+		this.statistics = statistics;
+		this.tokenThreshold = tokenThreshold;
+		// Jaro-Winkler = jaro + prefix * 0.1 * (1 - jaro), with a prefix of at most 4 characters
+		minJaro = (tokenThreshold - 0.4) / 0.6;
+	}
+
+	@Override
+	public double compare(String s1, String s2) 
+	{
+		return comparePrepared(prepare(s1), prepare(s2));
+	}
+	
+	@Override
+	public TFIDFVector prepare(String s) 
+	{
+		return statistics.vector(s);
+	}
+	
+	@Override
+	public double comparePrepared(TFIDFVector p1, TFIDFVector p2) 
+	{
+		int[] ids1 = p1.getIds();
+		int[] ids2 = p2.getIds();
+		String[] tokens1 = p1.getTokens();
+		String[] tokens2 = p2.getTokens();
+		double[] weights1 = p1.getWeights();
+		double[] weights2 = p2.getWeights();
+		
+		// similar token pairs (packed i * size2 + j), sorted by weighted similarity, descending and stable
+		int n = 0;
+		int[] pairs = new int[Math.min(8, ids1.length * ids2.length)];
+		double[] sims = new double[pairs.length];
+		for (int i = 0; i < ids1.length; i++)
+		{
+			for (int j = 0; j < ids2.length; j++)
+			{
+				double sim;
+				if (ids1[i] == ids2[j]) sim = 1.0;
+				else if (!canReach(tokens1[i].length(), tokens2[j].length())) continue;
+				else sim = jaroWinkler(tokens1[i], tokens2[j]);
+				if (sim < tokenThreshold) continue;
+				
+				sim = sim * weights1[i] * weights2[j];
+				if (n == pairs.length)
+				{
+					pairs = Arrays.copyOf(pairs, n * 2);
+					sims = Arrays.copyOf(sims, n * 2);
+				}
+				int k = n++;
+				while (k > 0 && sims[k - 1] < sim)
+				{
+					sims[k] = sims[k - 1];
+					pairs[k] = pairs[k - 1];
+					k--;
+				}
+				sims[k] = sim;
+				pairs[k] = i * ids2.length + j;
+			}
+		}
+		
+		// greedy one to one matching
+		boolean[] used1 = new boolean[ids1.length];
+		boolean[] used2 = new boolean[ids2.length];
+		double score = 0;
+		for (int k = 0; k < n; k++)
+		{
+			int i = pairs[k] / ids2.length;
+			int j = pairs[k] % ids2.length;
+			if (used1[i] || used2[j]) continue;
+			score += sims[k];
+			used1[i] = true;
+			used2[j] = true;
+		}
+		return score;
+	}
+	
+	/* Jaro similarity is at most (2 + shorter / longer) / 3, as at most the characters of the 
+	 * shorter token are common, so tokens of very different lengths cannot reach the threshold */
+	private boolean canReach(int length1, int length2)
+	{
+		double ratio = (double) Math.min(length1, length2) / Math.max(length1, length2);
+		return (2 + ratio) / 3 >= minJaro - 1e-9;
+	}
+	
+	/* Jaro-Winkler similarity as JaroWinkler from secondstring (tokens are lower case already): 
+	 * characters in common within half the length of the shorter token, counted in both directions, 
+	 * and a bonus for a common prefix of up to 4 characters, also added if the Jaro similarity is 0 */
+	static double jaroWinkler(String s, String t)
+	{
+		int window = Math.min(s.length(), t.length()) / 2 + 1;
+		char[] common1 = new char[s.length()];
+		char[] common2 = new char[t.length()];
+		int m1 = commonChars(s, t, window, common1);
+		int m2 = commonChars(t, s, window, common2);
+		
+		double jaro = 0;
+		if (m1 == m2 && m1 > 0)
+		{
+			int transpositions = 0;
+			for (int i = 0; i < m1; i++)
+			{
+				if (common1[i] != common2[i]) transpositions++;
+			}
+			transpositions /= 2;
+			jaro = ((double) m1 / s.length() + (double) m2 / t.length() + (double) (m1 - transpositions) / m1) / 3.0;
+		}
+		
+		int max = Math.min(4, Math.min(s.length(), t.length()));
+		int prefix = 0;
+		while (prefix < max && s.charAt(prefix) == t.charAt(prefix)) prefix++;
+		return jaro + prefix * 0.1 * (1 - jaro);
+	}
+	
+	// Characters of s that are also in t within the window, in the order of s; each character of t is used once
+	private static int commonChars(String s, String t, int window, char[] common)
+	{
+		char[] copy = t.toCharArray();
+		int m = 0;
+		for (int i = 0; i < s.length(); i++)
+		{
+			char c = s.charAt(i);
+			int end = Math.min(i + window, copy.length);
+			for (int j = Math.max(0, i - window); j < end; j++)
+			{
+				if (copy[j] == c)
+				{
+					common[m++] = c;
+					// marker of the library, so a '*' in s also matches a used character
+					copy[j] = '*';
+					break;
+				}
+			}
+		}
+		return m;
+	}
+	
+	public CorpusStatistics getStatistics()
+	{
+		return statistics;
+	}
+	
+	public double getTokenThreshold()
+	{
+		return tokenThreshold;
+	}
+}
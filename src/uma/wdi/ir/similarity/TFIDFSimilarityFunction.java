@@ -0,0 +1,54 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package uma.wdi.ir.similarity;
+
+public class TFIDFSimilarityFunction implements PreparedSimilarityFunction<TFIDFVector> 
+{
+	/**
+	 * Compares two strings, uses TF-IDF cosine similarity (same scores as TFIDF from secondstring, 
+	 * with the document frequencies counted once in CorpusStatistics instead of training on every use). 
+	 *
+	 */
+	
+	private CorpusStatistics statistics;
+	
+	public TFIDFSimilarityFunction(CorpusStatistics statistics)
+	{
+		this.statistics = statistics;
+	}
+
+	@Override
+	public double compare(String s1, String s2) 
+	{
+		return comparePrepared(prepare(s1), prepare(s2));
+	}
+	
+	@Override
+	public TFIDFVector prepare(String s) 
+	{
+		return statistics.vector(s);
+	}
+	
+	@Override
+	public double comparePrepared(TFIDFVector p1, TFIDFVector p2) 
+	{
+		return p1.dot(p2);
+	}
+	
+	public CorpusStatistics getStatistics()
+	{
+		return statistics;
+	}
+}
@@ -0,0 +1,79 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package uma.wdi.ir.similarity;
+
+/**
+ * Sparse TF-IDF vector of a value (see CorpusStatistics.vector): the distinct tokens sorted by token id,
+ * with their weights (length 1), so that two vectors are compared by merging
+ *
+ */
+public class TFIDFVector {
+	
+	private int[] ids;
+	private double[] weights;
+	private String[] tokens;
+	
+	public TFIDFVector(int[] ids, double[] weights, String[] tokens)
+	{
+		this.ids = ids;
+		this.weights = weights;
+		this.tokens = tokens;
+	}
+	
+	// Cosine similarity (dot product of the normalised vectors), sum over the shared tokens
+	public double dot(TFIDFVector other)
+	{
+		int[] ids2 = other.ids;
+		int i = 0;
+		int j = 0;
+		double sum = 0;
+		while (i < ids.length && j < ids2.length)
+		{
+			if (ids[i] == ids2[j])
+			{
+				sum += weights[i] * other.weights[j];
+				i++;
+				j++;
+			}
+			else if (ids[i] < ids2[j]) i++;
+			else j++;
+		}
+		return sum;
+	}
+	
+	// number of distinct tokens
+	public int size()
+	{
+		return ids.length;
+	}
+	
+	// Token ids, ascending
+	public int[] getIds()
+	{
+		return ids;
+	}
+	
+	// Weights, in the order of the ids
+	public double[] getWeights()
+	{
+		return weights;
+	}
+	
+	// Tokens, in the order of the ids
+	public String[] getTokens()
+	{
+		return tokens;
+	}
+}
@@ -0,0 +1,32 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package uma.wdi.ir.similarity;
+
+/**
+ * Similarity function that can stop early when the similarity is below a minimum
+ * (e.g. the threshold of the matcher, see SimpleMatcher)
+ *
+ */
+public interface ThresholdSimilarityFunction extends SimilarityFunction {
+	/**
+	 * Compute the similarity score for two strings, exactly only if it reaches minSimilarity.
+	 * @param s1
+	 * @param s2
+	 * @param minSimilarity
+	 * @return the same score as compare(s1, s2) if that is >= minSimilarity, otherwise a value
+	 * < minSimilarity that is not below compare(s1, s2) (an upper bound)
+	 */
+	public double compare(String s1, String s2, double minSimilarity);
+}
@@ -0,0 +1,100 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package uma.wdi.ir.similarity;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Distinct whitespace tokens of a value (tokenised as in simmetrics), sorted, 
+ * so that the tokens two values share are counted by merging
+ *
+ */
+public class TokenSetProfile {
+	
+	// delimiters of simmetrics' TokeniserWhitespace
+	private static final String DELIMITERS = "\r\n\t \u00A0";
+	
+	private String[] tokens;
+	
+	public TokenSetProfile(String s)
+	{
+		Set<String> distinct = new LinkedHashSet<String>(tokenize(s));
+		tokens = distinct.toArray(new String[distinct.size()]);
+		Arrays.sort(tokens);
+	}
+	
+	/* Tokens of a value in order, duplicates included. Same tokens as simmetrics' TokeniserWhitespace, 
+	 * which does not terminate on a no-break space after a whitespace; here it is skipped like the other delimiters */
+	public static List<String> tokenize(String s)
+	{
+		List<String> tokens = new ArrayList<String>();
+		int i = 0;
+		while (i < s.length())
+		{
+			int start = i;
+			if (Character.isWhitespace(s.charAt(i))) i++;
+			int next = s.length();
+			for (int d = 0; d < DELIMITERS.length(); d++)
+			{
+				int position = s.indexOf(DELIMITERS.charAt(d), i);
+				if (position < next && position != -1) next = position;
+			}
+			String token = s.substring(i, next);
+			if (!token.trim().equals("")) tokens.add(token);
+			// no progress only at a no-break space
+			i = (next > start) ? next : start + 1;
+		}
+		return tokens;
+	}
+	
+	// number of distinct tokens
+	public int size()
+	{
+		return tokens.length;
+	}
+	
+	// Distinct tokens, sorted
+	public String[] getTokens()
+	{
+		return tokens;
+	}
+	
+	// Number of tokens both profiles contain
+	public int common(TokenSetProfile other)
+	{
+		String[] t1 = tokens;
+		String[] t2 = other.tokens;
+		int i = 0;
+		int j = 0;
+		int common = 0;
+		while (i < t1.length && j < t2.length)
+		{
+			int c = t1[i].compareTo(t2[j]);
+			if (c == 0)
+			{
+				common++;
+				i++;
+				j++;
+			}
+			else if (c < 0) i++;
+			else j++;
+		}
+		return common;
+	}
+}
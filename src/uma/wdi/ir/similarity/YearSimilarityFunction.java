@@ -0,0 +1,61 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package uma.wdi.ir.similarity;
+
+public class YearSimilarityFunction implements SimilarityFunction 
+{
+	/**
+	 * Compares the years of two dates (the digits before the first '-', e.g. 2004 in "2004-10-12"): 
+	 * 1 if they differ by at most maxDifference years, 0 otherwise or if a value does not start with a year. 
+	 * Cheap filter before an expensive measure (see CascadeMatcher).
+	 *
+	 */
+	
+	private int maxDifference;
+	
+	public YearSimilarityFunction()
+	{
+		this(0);
+	}
+	
+	public YearSimilarityFunction(int maxDifference)
+	{
+		this.maxDifference = maxDifference;
+	}
+
+	@Override
+	public double compare(String s1, String s2) 
+	{
+		int year1 = year(s1);
+		int year2 = year(s2);
+		if (year1 < 0 || year2 < 0) return 0.0;
+		return Math.abs(year1 - year2) <= maxDifference ? 1.0 : 0.0;
+	}
+	
+	// Year at the start of a date, -1 if there is none
+	private static int year(String date)
+	{
+		String s = date.trim();
+		int year = 0;
+		int i = 0;
+		for (; i < s.length() && i < 9 && s.charAt(i) >= '0' && s.charAt(i) <= '9'; i++)
+		{
+			year = 10 * year + (s.charAt(i) - '0');
+		}
+		if (i == 0 || (i < s.length() && s.charAt(i) != '-')) return -1;
+		return year;
+	}
+	
+}